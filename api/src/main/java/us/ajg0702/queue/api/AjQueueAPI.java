@@ -5,6 +5,7 @@ import us.ajg0702.queue.api.premium.Logic;
 import us.ajg0702.queue.api.premium.LogicGetter;
 import us.ajg0702.queue.api.premium.PermissionHookRegistry;
 import us.ajg0702.queue.api.queueholders.QueueHolderRegistry;
+import us.ajg0702.queue.api.server.ServerHealth;
 import us.ajg0702.queue.api.spigot.AjQueueSpigotAPI;
 import us.ajg0702.queue.api.util.QueueLogger;
 import us.ajg0702.utils.common.Config;
@@ -138,4 +139,11 @@ public abstract class AjQueueAPI {
     public abstract <E> void listen(Class<E> event, EventReceiver<E> handler);
 
     public abstract ExecutorService getServersUpdateExecutor();
+
+    /**
+     * Gets the ping statistics for a server
+     * @param serverName The name of the server
+     * @return The server's health
+     */
+    public abstract ServerHealth getServerHealth(String serverName);
 }
@@ -6,7 +6,22 @@ import us.ajg0702.queue.api.server.AdaptedServer;
 
 public interface EventHandler {
 
-    void handleMessage(AdaptedPlayer reciever, byte[] data);
+    /**
+     * @deprecated Use {@link #handleMessage(AdaptedPlayer, String, byte[])}, so messages are credited to the server that sent them
+     */
+    @Deprecated
+    default void handleMessage(AdaptedPlayer reciever, byte[] data) {
+        handleMessage(reciever, reciever.getServerName(), data);
+    }
+
+    /**
+     * Handles a plugin message from the spigot-side
+     * @param reciever The player that the message was sent through
+     * @param sourceServer The name of the server whose connection sent the message.
+     *                     This can be different from the player's current server while they are switching servers
+     * @param data The message
+     */
+    void handleMessage(AdaptedPlayer reciever, String sourceServer, byte[] data);
 
     void onPlayerJoin(AdaptedPlayer player);
 
@@ -20,4 +35,12 @@ public interface EventHandler {
     onPlayerJoinServer(AdaptedPlayer player);
 
     void onServerKick(AdaptedPlayer player, AdaptedServer from, Component reason, boolean moving);
+
+    /**
+     * Called when connecting a player to a server failed without the player being kicked
+     * (e.g. the server could not be reached)
+     * @param player the player
+     * @param server the server the player was being sent to
+     */
+    void onConnectFailed(AdaptedPlayer player, AdaptedServer server);
 }
@@ -133,5 +133,10 @@ public interface QueueManager {
 
     void clear(AdaptedPlayer player);
 
+    /**
+     * Gets how many times each player that is being sent has been tried.
+     * Players are in this map from their first send attempt until they leave the queue.
+     * @return A read-only map of players to the number of times ajQueue has tried to send them
+     */
     Map<QueuePlayer, Integer> getSendingAttempts();
 }
@@ -13,8 +13,12 @@ public class PositionChangeEvent implements Event {
     private final int position;
 
     public PositionChangeEvent(QueuePlayer player) {
+        this(player, player.getPosition());
+    }
+
+    public PositionChangeEvent(QueuePlayer player, int position) {
         this.player = player;
-        position = player.getPosition();
+        this.position = position;
     }
 
     /**
@@ -9,6 +9,7 @@ import us.ajg0702.queue.api.util.Handle;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Represents a cross-platform player
@@ -70,8 +71,9 @@ public interface AdaptedPlayer extends Handle, Audience {
     /**
      * Sends the player to a different server.
      * Does not use the queue.
+     * @return A CompletableFuture that completes with true if the player was connected, or false if connecting failed
      */
-    void connect(AdaptedServer server);
+    CompletableFuture<Boolean> connect(AdaptedServer server);
 
     /**
      * Returns the version this player is running.
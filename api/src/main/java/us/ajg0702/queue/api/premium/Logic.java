@@ -49,7 +49,7 @@ public interface Logic {
         int fulljoinPriority = config.getInt("give-fulljoin-players-priority");
 
         if(whitelistedPriority > 0) {
-            if(server.isWhitelisted() && server.getWhitelistedPlayers().contains(player.getUniqueId())) {
+            if(server.isPlayerWhitelisted(player.getUniqueId())) {
                 highest = whitelistedPriority;
             }
         }
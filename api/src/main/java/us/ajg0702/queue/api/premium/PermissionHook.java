@@ -8,4 +8,9 @@ public interface PermissionHook {
     String getName();
     boolean canUse();
     List<String> getPermissions(AdaptedPlayer player);
+
+    /**
+     * Called when ajQueue is shutting down, to unregister anything the hook registered
+     */
+    default void shutdown() {}
 }
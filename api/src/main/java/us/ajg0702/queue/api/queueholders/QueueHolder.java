@@ -1,16 +1,21 @@
 package us.ajg0702.queue.api.queueholders;
 
+import com.google.common.collect.ImmutableList;
 import us.ajg0702.queue.api.players.AdaptedPlayer;
 import us.ajg0702.queue.api.players.QueuePlayer;
 import us.ajg0702.queue.api.queues.QueueServer;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class QueueHolder {
 
     private final QueueServer queueServer;
 
+    private final AtomicLong modCount = new AtomicLong();
+    private volatile Snapshot snapshot;
+
     public QueueHolder(QueueServer queueServer) {
         this.queueServer = queueServer;
     }
@@ -38,6 +43,24 @@ public abstract class QueueHolder {
      */
     public abstract void addPlayer(QueuePlayer player, int position);
 
+    /**
+     * Adds a player in front of everyone with a lower priority than them
+     * NOTE: Do not manually call this! Use the QueueManager to add players to queues
+     * @param player The QueuePlayer to add
+     */
+    public void addPlayerByPriority(QueuePlayer player) {
+        int priority = player.getPriority();
+        int i = 0;
+        for(QueuePlayer queuePlayer : getAllPlayers()) {
+            if(queuePlayer.getPriority() < priority) {
+                addPlayer(player, i);
+                return;
+            }
+            i++;
+        }
+        addPlayer(player);
+    }
+
     public void removePlayer(AdaptedPlayer player) {
         removePlayer(player.getUniqueId());
     }
@@ -70,6 +93,15 @@ public abstract class QueueHolder {
         return findPlayer(player.getUniqueId());
     }
 
+    /**
+     * Gets the position of a player in this queue
+     * @param player The player to look up
+     * @return The player's position. 1 being 1st, 2 being 2nd, etc. 0 if they are not in this queue
+     */
+    public int getPosition(QueuePlayer player) {
+        return getSnapshot().indexOf(player)+1;
+    }
+
     /**
      * Returns the size of the queue
      * @return The number of players in the queue
@@ -81,4 +113,56 @@ public abstract class QueueHolder {
      * @return a list of players in the queue
      */
     public abstract List<QueuePlayer> getAllPlayers();
+
+    /**
+     * Gets an immutable snapshot of the queue.
+     * If this QueueHolder is versioned, the snapshot is cached until the queue is changed,
+     * so calling this repeatedly does not copy the queue.
+     * @return an immutable list of the players in the queue
+     */
+    public ImmutableList<QueuePlayer> getSnapshot() {
+        if(!isVersioned()) return ImmutableList.copyOf(getAllPlayers());
+        long version = modCount.get();
+        Snapshot current = snapshot;
+        if(current != null && current.version == version) return current.players;
+        ImmutableList<QueuePlayer> players = ImmutableList.copyOf(getAllPlayers());
+        snapshot = new Snapshot(version, players);
+        return players;
+    }
+
+    /**
+     * Gets the number of times this queue has been changed.
+     * Only increases if this QueueHolder is versioned.
+     * @return the modification count of this queue
+     */
+    public long getModCount() {
+        return modCount.get();
+    }
+
+    /**
+     * Marks the queue as changed, which invalidates the cached snapshot.
+     * Versioned QueueHolders must call this after every change to the queue.
+     */
+    protected void markModified() {
+        modCount.incrementAndGet();
+    }
+
+    /**
+     * If this QueueHolder calls markModified() after every change.
+     * If false, getSnapshot() will copy the queue every time it is called.
+     * @return true if snapshots from this QueueHolder can be cached
+     */
+    protected boolean isVersioned() {
+        return false;
+    }
+
+    private static class Snapshot {
+        private final long version;
+        private final ImmutableList<QueuePlayer> players;
+
+        private Snapshot(long version, ImmutableList<QueuePlayer> players) {
+            this.version = version;
+            this.players = players;
+        }
+    }
 }
@@ -23,6 +23,14 @@ public interface QueueServer {
     @Deprecated
     ImmutableList<QueuePlayer> getQueue();
 
+    /**
+     * Gets the number of players in the queue, without copying the queue
+     * @return The number of players in the queue
+     */
+    default int getQueueSize() {
+        return getQueueHolder().getQueueSize();
+    }
+
     /**
      * Get the status of the server as a string
      * @param p The player that you are checking for. Used for checking restricted servers
@@ -51,6 +59,22 @@ public interface QueueServer {
      */
     String getStatus();
 
+    /**
+     * Get the status of the server
+     * @param p The player that you are checking for. Used for checking restricted servers
+     * @return The status of the server
+     */
+    QueueStatus getQueueStatus(AdaptedPlayer p);
+
+    /**
+     * Get the status of the server.
+     * Does not check if the player has access using restricted mode. May show online if it is restricted
+     * @return The status of the server
+     */
+    default QueueStatus getQueueStatus() {
+        return getQueueStatus(null);
+    }
+
     /**
      * Gets how long since the last person was sent
      * @return The number of miliseconds since the last person was sent
@@ -63,6 +87,13 @@ public interface QueueServer {
      */
     void setLastSentTime(long lastSentTime);
 
+    /**
+     * Gets the current time between sending players from this queue.
+     * This is wait-time, unless adaptive-send-rate is enabled.
+     * @return The time between sending players, in seconds
+     */
+    double getSendInterval();
+
     /**
      * Checks if the server is joinable by a player
      * @param p The player to see if they can join
@@ -121,6 +152,13 @@ public interface QueueServer {
      */
     void addPlayer(QueuePlayer player, int position);
 
+    /**
+     * Adds a player in front of everyone in the queue with a lower priority than them
+     * NOTE: It is reccomended to use QueueManager#addToQueue
+     * @param player The QueuePlayer to add
+     */
+    void addPlayerByPriority(QueuePlayer player);
+
     /**
      * Sends the first player in the queue to the server
      */
@@ -0,0 +1,40 @@
+package us.ajg0702.queue.api.queues;
+
+import java.util.Locale;
+
+/**
+ * Whether a queue can currently be joined, and if not, why.
+ * Checked in the order they are listed here, so a queue that is both paused and full is PAUSED.
+ */
+public enum QueueStatus {
+    /**
+     * The server has been offline for longer than offline-time
+     */
+    OFFLINE,
+    /**
+     * The server is offline, but hasn't been for longer than offline-time
+     */
+    RESTARTING,
+    PAUSED,
+    WHITELISTED,
+    FULL,
+    /**
+     * The player doesn't have access to the server (restricted mode)
+     */
+    RESTRICTED,
+    ONLINE;
+
+    private final String key = name().toLowerCase(Locale.ROOT);
+
+    /**
+     * Gets the name of this status as used in the messages file (e.g. placeholders.status.&lt;key&gt;)
+     * @return the lowercase name of this status
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isOnline() {
+        return this == ONLINE;
+    }
+}
@@ -1,5 +1,6 @@
 package us.ajg0702.queue.api.server;
 
+import com.google.common.collect.ImmutableList;
 import us.ajg0702.queue.api.AjQueueAPI;
 import us.ajg0702.queue.api.players.AdaptedPlayer;
 import us.ajg0702.queue.api.util.Handle;
@@ -35,6 +36,38 @@ public interface AdaptedServer extends Handle {
 
     Optional<AdaptedServerPing> getLastPing();
 
+    /**
+     * Marks the server as offline, as if its last ping failed.
+     * Used when a ping doesn't get an answer in time.
+     */
+    void markOffline();
+
+    /**
+     * Gets the last heartbeat that the spigot-side sent for this server, even if it isn't fresh anymore
+     * @return The last heartbeat, or an empty optional if none has been received
+     */
+    Optional<ServerHeartbeat> getLastHeartbeat();
+
+    void setLastHeartbeat(ServerHeartbeat heartbeat);
+
+    /**
+     * Gets the last heartbeat, if it is recent enough to be used instead of the last ping
+     * @return The heartbeat, or an empty optional if there isn't a fresh one
+     */
+    default Optional<ServerHeartbeat> getFreshHeartbeat() {
+        Optional<ServerHeartbeat> heartbeat = getLastHeartbeat();
+        return heartbeat.isPresent() && heartbeat.get().isFresh() ? heartbeat : Optional.empty();
+    }
+
+    /**
+     * Gets statistics about how this server has been answering pings recently (latency, success ratio, flapping).
+     * Balancers can use this to avoid servers that are getting slower before they start failing.
+     * @return The server's health
+     */
+    default ServerHealth getHealth() {
+        return AjQueueAPI.getInstance().getServerHealth(getName());
+    }
+
     /**
      * If the player can access the server
      * Uses bungeecord's restricted server feature
@@ -72,7 +105,7 @@ public interface AdaptedServer extends Handle {
 
     default boolean isJoinable(AdaptedPlayer player) {
         if(player != null) {
-            if (isWhitelisted() && !getWhitelistedPlayers().contains(player.getUniqueId())) {
+            if (isWhitelisted() && !isPlayerWhitelisted(player.getUniqueId())) {
                 return false;
             }
             if (isFull() && !canJoinFull(player)) {
@@ -84,17 +117,31 @@ public interface AdaptedServer extends Handle {
     }
 
     default boolean isFull() {
+        Optional<ServerHeartbeat> heartbeat = getFreshHeartbeat();
+        if(heartbeat.isPresent()) return heartbeat.get().getPlayerCount() >= heartbeat.get().getMaxPlayers();
         if(!getLastPing().isPresent()) return false;
         return getLastPing().get().getPlayerCount() >= getLastPing().get().getMaxPlayers();
     }
 
     /**
-     * Gets if the last ping was successful
-     * (which almost always means the server is online)
+     * Gets if the last ping was successful or there is a fresh heartbeat
+     * (which almost always means the server is online).
+     * Servers that say they are draining in their heartbeat are counted as offline.
      * @return If the server is determined to be online or not
      */
     default boolean isOnline() {
-        return getLastPing().isPresent() && !shouldWaitAfterOnline();
+        Optional<ServerHeartbeat> heartbeat = getFreshHeartbeat();
+        if(heartbeat.isPresent() && heartbeat.get().isDraining()) return false;
+        return (getLastPing().isPresent() || heartbeat.isPresent()) && !shouldWaitAfterOnline();
+    }
+
+    /**
+     * Checks if the spigot-side reports that the server is draining (about to restart or shut down)
+     * @return True if the server has a fresh heartbeat that says it is draining
+     */
+    default boolean isDraining() {
+        Optional<ServerHeartbeat> heartbeat = getFreshHeartbeat();
+        return heartbeat.isPresent() && heartbeat.get().isDraining();
     }
 
     boolean shouldWaitAfterOnline();
@@ -104,6 +151,8 @@ public interface AdaptedServer extends Handle {
      * @return The number of players online
      */
     default int getPlayerCount() {
+        Optional<ServerHeartbeat> heartbeat = getFreshHeartbeat();
+        if(heartbeat.isPresent()) return heartbeat.get().getPlayerCount();
         if(!getLastPing().isPresent()) return 0;
 
         AdaptedServerPing ping = getLastPing().get();
@@ -115,6 +164,8 @@ public interface AdaptedServer extends Handle {
      * @return The maximum number of players that can join this server
      */
     default int getMaxPlayers() {
+        Optional<ServerHeartbeat> heartbeat = getFreshHeartbeat();
+        if(heartbeat.isPresent()) return heartbeat.get().getMaxPlayers();
         if(!getLastPing().isPresent()) return 0;
 
         AdaptedServerPing ping = getLastPing().get();
@@ -125,6 +176,7 @@ public interface AdaptedServer extends Handle {
      * Temporarly adds one player to the player count
      */
     default void addPlayer() {
+        getLastHeartbeat().ifPresent(ServerHeartbeat::addPlayer);
         if(!getLastPing().isPresent()) return;
         getLastPing().get().addPlayer();
     }
@@ -134,29 +186,70 @@ public interface AdaptedServer extends Handle {
      * @return True if the server is whitelisted
      */
     default boolean isWhitelisted() {
-        if(!getLastPing().isPresent()) return false;
-        return getLastPing().get().getPlainDescription().contains("ajQueue;whitelisted=");
+        Optional<ServerHeartbeat> heartbeat = getFreshHeartbeat();
+        if(heartbeat.isPresent() && !isWhitelistFromPing(heartbeat.get())) return heartbeat.get().isWhitelisted();
+        Optional<AdaptedServerPing> ping = getLastPing();
+        return ping.isPresent() && ping.get().isWhitelisted();
     }
 
     /**
      * (if the server is whitelisted) returns the list of players that are whitelisted
      * @return The list of players that are whitelisted
+     * @deprecated Copies the whitelist every time. Use {@link #getWhitelistedPlayerSet()} or {@link #isPlayerWhitelisted(UUID)} instead
      */
+    @Deprecated
     default List<UUID> getWhitelistedPlayers() {
-        if(!getLastPing().isPresent()) return Collections.emptyList();
-        if(!isWhitelisted()) return Collections.emptyList();
-        List<UUID> uuids = new ArrayList<>();
-        for(String uuid : getLastPing().get().getPlainDescription().substring(20).split(",")) {
-            if(uuid.isEmpty()) continue;
-            UUID parsedUUID;
-            try {
-                parsedUUID = UUID.fromString(uuid);
-            } catch(IllegalArgumentException ignored) {
-                continue;
-            }
-            uuids.add(parsedUUID);
-        }
-        return uuids;
+        return ImmutableList.copyOf(getWhitelistedPlayerSet());
+    }
+
+    /**
+     * (if the server is whitelisted) returns the players that are whitelisted
+     * @return The UUIDs of the players that are whitelisted
+     */
+    default Set<UUID> getWhitelistedPlayerSet() {
+        Optional<AdaptedServerPing> ping = getLastPing();
+        if(!ping.isPresent()) return Collections.emptySet();
+        return ping.get().getWhitelistedPlayerSet();
+    }
+
+    /**
+     * Checks if the whitelisted players from the last ping can be used right now.
+     * If a fresh heartbeat reports a different whitelist than the last ping, it isn't known who is on it
+     * until the server is pinged again, or until {@link ServerHeartbeat#WHITELIST_WAIT} has passed.
+     * @return False while waiting for a ping with the whitelist that the heartbeat reports
+     */
+    default boolean isWhitelistKnown() {
+        Optional<ServerHeartbeat> heartbeat = getFreshHeartbeat();
+        if(!heartbeat.isPresent() || !heartbeat.get().isWhitelisted()) return true;
+        Optional<AdaptedServerPing> ping = getLastPing();
+        if(ping.isPresent() && ping.get().getWhitelistDigest() == heartbeat.get().getWhitelistDigest()) return true;
+        return isWhitelistFromPing(heartbeat.get());
+    }
+
+    /**
+     * Checks if the server is whitelisted and the player is on the whitelist
+     * @param uuid The UUID of the player to check
+     * @return True if the player is on the server's whitelist.
+     * False if they aren't, or if the whitelist isn't known right now (see {@link #isWhitelistKnown()})
+     */
+    default boolean isPlayerWhitelisted(UUID uuid) {
+        if(!isWhitelistKnown() || !isWhitelisted()) return false;
+        Optional<AdaptedServerPing> ping = getLastPing();
+        return ping.isPresent() && ping.get().getWhitelistedPlayerSet().contains(uuid);
+    }
+
+    /**
+     * Checks if we gave up on getting the whitelist that the heartbeat reports, and went back to the last ping.
+     * That happens once a ping from after the change still doesn't have it (e.g. another plugin replaced the motd),
+     * or once we have waited for {@link ServerHeartbeat#WHITELIST_WAIT}.
+     */
+    private boolean isWhitelistFromPing(ServerHeartbeat heartbeat) {
+        if(!heartbeat.isWhitelisted()) return false;
+        Optional<AdaptedServerPing> ping = getLastPing();
+        if(ping.isPresent() && ping.get().getWhitelistDigest() == heartbeat.getWhitelistDigest()) return false;
+        long changed = heartbeat.getWhitelistChangedTime();
+        if(ping.isPresent() && ping.get().getFetchedTime() > changed) return true;
+        return System.currentTimeMillis() - changed > ServerHeartbeat.WHITELIST_WAIT;
     }
 
 }
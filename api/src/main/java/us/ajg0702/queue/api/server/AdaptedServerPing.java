@@ -1,10 +1,20 @@
 package us.ajg0702.queue.api.server;
 
+import com.google.common.collect.ImmutableSet;
 import net.kyori.adventure.text.Component;
 import us.ajg0702.queue.api.util.Handle;
 
+import java.util.UUID;
+
 @SuppressWarnings("unused")
 public interface AdaptedServerPing extends Handle {
+
+    /**
+     * What the spigot-side puts at the start of the description when the server is whitelisted,
+     * followed by the whitelisted players' UUIDs separated by commas
+     */
+    String WHITELIST_PREFIX = "ajQueue;whitelisted=";
+
     /**
      * Gets the component of the description (aka MOTD)
      * @return A compoent of the description
@@ -39,4 +49,53 @@ public interface AdaptedServerPing extends Handle {
      * @return A long of an epoch timestamp
      */
     long getFetchedTime();
+
+    /**
+     * Checks if the spigot-side reports that the server is whitelisted.
+     * Implementations should work this out once when the ping is received.
+     * @return True if the server is whitelisted
+     */
+    default boolean isWhitelisted() {
+        return isWhitelisted(getPlainDescription());
+    }
+
+    /**
+     * (if the server is whitelisted) gets the players that are whitelisted.
+     * Implementations should work this out once when the ping is received.
+     * @return The UUIDs of the whitelisted players, or an empty set if the server isn't whitelisted
+     */
+    default ImmutableSet<UUID> getWhitelistedPlayerSet() {
+        return parseWhitelist(getPlainDescription());
+    }
+
+    /**
+     * Gets a hash of the whitelisted players, to compare with the one in the server's heartbeats.
+     * Implementations should work this out once when the ping is received.
+     * @return The digest from {@link ServerHeartbeat#digest(java.util.Collection)}
+     */
+    default long getWhitelistDigest() {
+        return ServerHeartbeat.digest(getWhitelistedPlayerSet());
+    }
+
+    static boolean isWhitelisted(String description) {
+        return description != null && description.contains(WHITELIST_PREFIX);
+    }
+
+    /**
+     * Reads the whitelisted players from a description sent by the spigot-side
+     * @param description The plain description (aka MOTD)
+     * @return The UUIDs of the whitelisted players, or an empty set if the server isn't whitelisted
+     */
+    static ImmutableSet<UUID> parseWhitelist(String description) {
+        if(!isWhitelisted(description)) return ImmutableSet.of();
+        ImmutableSet.Builder<UUID> uuids = ImmutableSet.builder();
+        String list = description.substring(description.indexOf(WHITELIST_PREFIX) + WHITELIST_PREFIX.length());
+        for(String uuid : list.split(",")) {
+            if(uuid.isEmpty()) continue;
+            try {
+                uuids.add(UUID.fromString(uuid.trim()));
+            } catch(IllegalArgumentException ignored) {}
+        }
+        return uuids.build();
+    }
 }
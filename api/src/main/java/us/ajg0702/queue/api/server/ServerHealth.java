@@ -0,0 +1,59 @@
+package us.ajg0702.queue.api.server;
+
+/**
+ * Statistics about how a server has been answering pings recently.
+ * Useful for noticing servers that are slowly getting worse before they start failing to connect players.
+ */
+@SuppressWarnings("unused")
+public interface ServerHealth {
+
+    /**
+     * Gets the number of recent pings that these statistics are from
+     * @return The number of pings (successful or not) that are being remembered
+     */
+    int getSampleCount();
+
+    /**
+     * Gets how long the last successful ping took
+     * @return The round-trip time in milliseconds, or -1 if no ping has succeeded yet
+     */
+    long getLastLatency();
+
+    /**
+     * Gets the average round-trip time of the recent successful pings
+     * @return The average time in milliseconds, or -1 if no ping has succeeded recently
+     */
+    double getAverageLatency();
+
+    /**
+     * Gets a percentile of the round-trip time of the recent successful pings
+     * @param percentile The percentile to get, from 0 to 100 (e.g. 95 for p95)
+     * @return The time in milliseconds, or -1 if no ping has succeeded recently
+     */
+    long getLatencyPercentile(double percentile);
+
+    /**
+     * Gets how many of the recent pings succeeded
+     * @return The ratio of successful pings, from 0 to 1. 1 if the server hasn't been pinged yet
+     */
+    double getSuccessRatio();
+
+    /**
+     * Gets if the last ping succeeded
+     * @return True if the last ping succeeded
+     */
+    boolean isUp();
+
+    /**
+     * Gets how long ago the server went from answering pings to not answering them, or the other way around
+     * @return The time in milliseconds, or -1 if that hasn't happened since it was first pinged
+     */
+    long getTimeSinceStateChange();
+
+    /**
+     * Gets how many times the server has gone up or down recently.
+     * A high number means the server is flapping.
+     * @return The number of state changes in the last 10 minutes
+     */
+    int getRecentStateChanges();
+}
@@ -0,0 +1,186 @@
+package us.ajg0702.queue.api.server;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A status update that the spigot-side sends to the proxy every few ticks (while at least one player is online on it).
+ * While it is fresh, it is used instead of the last ping for the player count, max players, whitelist and online state.
+ */
+@SuppressWarnings("unused")
+public class ServerHeartbeat {
+
+    /**
+     * The version of the heartbeat format. Heartbeats with a different version are ignored.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * How long (in milliseconds) to wait for a ping with the new whitelist after a heartbeat reports that it changed.
+     * After that, the whitelist from the last ping is used.
+     */
+    public static final long WHITELIST_WAIT = 10_000;
+
+    private final long received;
+    private final long expires;
+
+    private final int onlinePlayers;
+    private final int maxPlayers;
+    private final double tps;
+    private final boolean draining;
+    private final boolean whitelisted;
+    private final long whitelistDigest;
+
+    private final AtomicInteger add = new AtomicInteger();
+    private volatile long whitelistChanged;
+
+    public ServerHeartbeat(int onlinePlayers, int maxPlayers, double tps, boolean draining, boolean whitelisted, long whitelistDigest, long received, long keepFor) {
+        this.onlinePlayers = onlinePlayers;
+        this.maxPlayers = maxPlayers;
+        this.tps = tps;
+        this.draining = draining;
+        this.whitelisted = whitelisted;
+        this.whitelistDigest = whitelistDigest;
+        this.received = received;
+        this.expires = received + keepFor;
+        this.whitelistChanged = received;
+    }
+
+    /**
+     * Keeps the time the whitelist changed from the previous heartbeat, if this one reports the same whitelist
+     * @param previous The heartbeat that this one replaces, or null if there wasn't one
+     */
+    public void continueFrom(ServerHeartbeat previous) {
+        if(previous == null) return;
+        if(previous.whitelisted != whitelisted || previous.whitelistDigest != whitelistDigest) return;
+        whitelistChanged = previous.whitelistChanged;
+    }
+
+    /**
+     * Gets if this heartbeat is recent enough to be used
+     * @return True if it hasn't been longer than heartbeat-timeout since this heartbeat was received
+     */
+    public boolean isFresh() {
+        return System.currentTimeMillis() < expires;
+    }
+
+    /**
+     * Returns an epoch timestamp of when this heartbeat was received
+     * @return A long of an epoch timestamp
+     */
+    public long getReceivedTime() {
+        return received;
+    }
+
+    /**
+     * Gets the number of players online, including players that were sent since this heartbeat was received
+     * @return The number of players online
+     */
+    public int getPlayerCount() {
+        return onlinePlayers + add.get();
+    }
+
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+
+    /**
+     * Gets the server's TPS, measured between the last two heartbeats
+     * @return The server's TPS (at most 20)
+     */
+    public double getTps() {
+        return tps;
+    }
+
+    /**
+     * Gets if the server is draining (about to restart or shut down), so players shouldn't be sent to it
+     * @return True if the server is draining
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    public boolean isWhitelisted() {
+        return whitelisted;
+    }
+
+    /**
+     * Gets a hash of the whitelisted players, to be able to tell when the whitelist changes
+     * @return The digest from {@link #digest(Collection)}, or 0 if the server isn't whitelisted
+     */
+    public long getWhitelistDigest() {
+        return whitelistDigest;
+    }
+
+    /**
+     * Returns an epoch timestamp of when a heartbeat first reported this whitelist
+     * @return A long of an epoch timestamp
+     */
+    public long getWhitelistChangedTime() {
+        return whitelistChanged;
+    }
+
+    /**
+     * Temporarly adds one player to the player count
+     */
+    public void addPlayer() {
+        add.incrementAndGet();
+    }
+
+    /**
+     * Makes a hash of a whitelist that doesn't depend on the order of the players
+     * @param uuids The whitelisted players
+     * @return The digest
+     */
+    public static long digest(Collection<UUID> uuids) {
+        long digest = uuids.size();
+        for(UUID uuid : uuids) {
+            long hash = uuid.getMostSignificantBits() * 31 + uuid.getLeastSignificantBits();
+            // mix the bits so that similar UUIDs don't cancel out
+            hash ^= (hash >>> 33);
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= (hash >>> 33);
+            digest += hash;
+        }
+        return digest;
+    }
+
+    /**
+     * Turns the heartbeat info into what the spigot-side sends
+     */
+    public static String encode(int onlinePlayers, int maxPlayers, double tps, boolean draining, boolean whitelisted, long whitelistDigest) {
+        return VERSION + ";" + onlinePlayers + ";" + maxPlayers + ";" + String.format(Locale.ROOT, "%.2f", tps) + ";" +
+                (draining ? 1 : 0) + ";" + (whitelisted ? 1 : 0) + ";" + whitelistDigest;
+    }
+
+    /**
+     * Reads a heartbeat sent by the spigot-side
+     * @param data The data from {@link #encode(int, int, double, boolean, boolean, long)}
+     * @param keepFor How long (in milliseconds) the heartbeat should be used for
+     * @return The heartbeat
+     * @throws IllegalArgumentException If the data isn't a valid heartbeat, or is from a different version
+     */
+    public static ServerHeartbeat decode(String data, long keepFor) {
+        String[] parts = data.split(";");
+        if(parts.length < 7) throw new IllegalArgumentException("Invalid heartbeat: "+data);
+        try {
+            if(Integer.parseInt(parts[0]) != VERSION) {
+                throw new IllegalArgumentException("Unsupported heartbeat version "+parts[0]);
+            }
+            return new ServerHeartbeat(
+                    Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]),
+                    Double.parseDouble(parts[3]),
+                    parts[4].equals("1"),
+                    parts[5].equals("1"),
+                    Long.parseLong(parts[6]),
+                    System.currentTimeMillis(),
+                    keepFor
+            );
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid heartbeat: "+data, e);
+        }
+    }
+}
@@ -88,4 +88,18 @@ public abstract class AjQueueSpigotAPI {
      */
     public abstract Future<MessagedResponse<String>> getEstimatedTime(UUID player);
 
+    /**
+     * Sets if this server is draining (about to restart or shut down).
+     * While draining, the proxy won't send any players to this server.
+     * Requires heartbeat-interval to be enabled in the spigot-side config
+     * @param draining If the server is draining
+     */
+    public abstract void setDraining(boolean draining);
+
+    /**
+     * Checks if this server has been set as draining
+     * @return True if the server is draining
+     */
+    public abstract boolean isDraining();
+
 }
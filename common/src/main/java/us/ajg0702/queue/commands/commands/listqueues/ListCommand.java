@@ -70,7 +70,7 @@ public class ListCommand extends BaseCommand {
             m = m.append(main.getMessages().getComponent("commands.listqueues.format",
                     "COLOR:" + Messages.color(color),
                     "NAME:" + s.getAlias(),
-                    "COUNT:" + s.getQueue().size(),
+                    "COUNT:" + s.getQueueSize(),
                     "STATUS:" + Messages.color(main.getMessages().getRawString("placeholders.status."+s.getStatus(spp)))
             ));
         }
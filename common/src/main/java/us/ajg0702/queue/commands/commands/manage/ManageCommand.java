@@ -26,6 +26,8 @@ public class ManageCommand extends BaseCommand {
         addSubCommand(new ISP(main));
         addSubCommand(new PermissionList(main));
         addSubCommand(new Tasks(main));
+        addSubCommand(new SendRate(main));
+        addSubCommand(new Health(main));
         addSubCommand(new Version(main));
         addSubCommand(new Whitelist(main));
 
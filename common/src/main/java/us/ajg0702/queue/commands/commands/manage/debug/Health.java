@@ -0,0 +1,80 @@
+package us.ajg0702.queue.commands.commands.manage.debug;
+
+import com.google.common.collect.ImmutableList;
+import us.ajg0702.queue.api.commands.ICommandSender;
+import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.api.server.ServerHealth;
+import us.ajg0702.queue.commands.SubCommand;
+import us.ajg0702.queue.common.QueueMain;
+import us.ajg0702.utils.common.Messages;
+import us.ajg0702.utils.common.TimeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Health extends SubCommand {
+
+    final QueueMain main;
+    public Health(QueueMain main) {
+        this.main = main;
+    }
+
+    @Override
+    public String getName() {
+        return "health";
+    }
+
+    @Override
+    public ImmutableList<String> getAliases() {
+        return ImmutableList.of();
+    }
+
+    @Override
+    public String getPermission() {
+        return "ajqueue.manage.health";
+    }
+
+    @Override
+    public boolean showInTabComplete() {
+        return false;
+    }
+
+    @Override
+    public Messages getMessages() {
+        return main.getMessages();
+    }
+
+    @Override
+    public void execute(ICommandSender sender, String[] args) {
+        if(!checkPermission(sender)) return;
+        Messages msgs = main.getMessages();
+        sender.sendMessage(main.getMessages().toComponent("<gold>Server health:"));
+        for(AdaptedServer server : main.getPlatformMethods().getServers()) {
+            if(args.length > 0 && !server.getName().equalsIgnoreCase(args[0])) continue;
+            ServerHealth health = server.getHealth();
+            if(health.getSampleCount() == 0) {
+                sender.sendMessage(main.getMessages().toComponent("<yellow>"+server.getName()+"<gray>: not pinged yet"));
+                continue;
+            }
+            long sinceChange = health.getTimeSinceStateChange();
+            sender.sendMessage(main.getMessages().toComponent(
+                    "<yellow>"+server.getName()+"<gray>: "+
+                            (health.isUp() ? "<green>up" : "<red>down")+
+                            (sinceChange < 0 ? "" : " <gray>for <white>"+TimeUtils.timeString((int) (sinceChange / 1000), msgs.getString("format.time.mins"), msgs.getString("format.time.secs")))+
+                            " <gray>| rtt p50 <white>"+formatLatency(health.getLatencyPercentile(50))+
+                            " <gray>p95 <white>"+formatLatency(health.getLatencyPercentile(95))+
+                            " <gray>| <white>"+String.format("%.0f", health.getSuccessRatio() * 100)+"% <gray>of <white>"+health.getSampleCount()+" <gray>pings ok"+
+                            " <gray>| <white>"+health.getRecentStateChanges()+" <gray>ups/downs in 10m"
+            ));
+        }
+    }
+
+    private String formatLatency(long latency) {
+        return latency < 0 ? "-" : latency+"ms";
+    }
+
+    @Override
+    public List<String> autoComplete(ICommandSender sender, String[] args) {
+        return new ArrayList<>();
+    }
+}
@@ -0,0 +1,64 @@
+package us.ajg0702.queue.commands.commands.manage.debug;
+
+import com.google.common.collect.ImmutableList;
+import us.ajg0702.queue.api.commands.ICommandSender;
+import us.ajg0702.queue.api.queues.QueueServer;
+import us.ajg0702.queue.commands.SubCommand;
+import us.ajg0702.queue.common.QueueMain;
+import us.ajg0702.queue.common.queues.SendRateController;
+import us.ajg0702.utils.common.Messages;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SendRate extends SubCommand {
+
+    final QueueMain main;
+    public SendRate(QueueMain main) {
+        this.main = main;
+    }
+
+    @Override
+    public String getName() {
+        return "sendrate";
+    }
+
+    @Override
+    public ImmutableList<String> getAliases() {
+        return ImmutableList.of();
+    }
+
+    @Override
+    public String getPermission() {
+        return "ajqueue.manage.sendrate";
+    }
+
+    @Override
+    public boolean showInTabComplete() {
+        return false;
+    }
+
+    @Override
+    public Messages getMessages() {
+        return main.getMessages();
+    }
+
+    @Override
+    public void execute(ICommandSender sender, String[] args) {
+        if(!checkPermission(sender)) return;
+        boolean adaptive = SendRateController.isEnabled(main);
+        sender.sendMessage(main.getMessages().toComponent("<gold>Send rates ("+(adaptive ? "adaptive" : "fixed")+"):"));
+        for(QueueServer server : main.getQueueManager().getServers()) {
+            if(args.length > 0 && !server.getName().equalsIgnoreCase(args[0])) continue;
+            double interval = server.getSendInterval();
+            sender.sendMessage(main.getMessages().toComponent(
+                    "<yellow>"+server.getName()+"<gray>: <white>"+String.format("%.2f", interval)+"s <gray>between players (<white>"+String.format("%.2f", 1 / interval)+"<gray>/s)"
+            ));
+        }
+    }
+
+    @Override
+    public List<String> autoComplete(ICommandSender sender, String[] args) {
+        return new ArrayList<>();
+    }
+}
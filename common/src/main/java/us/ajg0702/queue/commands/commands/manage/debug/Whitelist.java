@@ -55,7 +55,7 @@ public class Whitelist extends SubCommand {
             return;
         }
         sender.sendMessage(main.getMessages().toComponent("<green>Yours: "+ main.getPlatformMethods().senderToPlayer(sender).getUniqueId().toString()));
-        server.getWhitelistedPlayers().forEach(uuid -> sender.sendMessage(main.getMessages().toComponent("<yellow>"+uuid)));
+        server.getWhitelistedPlayerSet().forEach(uuid -> sender.sendMessage(main.getMessages().toComponent("<yellow>"+uuid)));
     }
 
     @Override
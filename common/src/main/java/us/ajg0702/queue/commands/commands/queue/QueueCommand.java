@@ -6,19 +6,20 @@ import us.ajg0702.queue.api.commands.ISubCommand;
 import us.ajg0702.queue.api.players.AdaptedPlayer;
 import us.ajg0702.queue.commands.BaseCommand;
 import us.ajg0702.queue.common.QueueMain;
+import us.ajg0702.queue.common.utils.ExpiringMap;
 import us.ajg0702.utils.common.Messages;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class QueueCommand extends BaseCommand {
 
-    public static Map<AdaptedPlayer, Long> cooldowns = new ConcurrentHashMap<>();
+    private final ExpiringMap<AdaptedPlayer> cooldowns;
 
     private final QueueMain main;
 
     public QueueCommand(QueueMain main) {
         this.main = main;
+        this.cooldowns = main.getQueueCommandCooldowns();
     }
 
     @Override
@@ -68,7 +69,7 @@ public class QueueCommand extends BaseCommand {
                 return;
             }
 
-            cooldowns.put(player, System.currentTimeMillis());
+            cooldowns.put(player, System.currentTimeMillis(), (long) (cooldownTime * 1000L));
         }
 
         if(args.length > 0) {
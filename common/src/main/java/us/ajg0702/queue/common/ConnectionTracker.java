@@ -0,0 +1,104 @@
+package us.ajg0702.queue.common;
+
+import us.ajg0702.queue.api.players.AdaptedPlayer;
+import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.common.utils.Debug;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps track of the connections that ajQueue has started and that have not finished yet, per server.
+ * Servers are tracked by name, since platforms can create more than one AdaptedServer for the same server.
+ */
+public class ConnectionTracker {
+
+    private final QueueMain main;
+
+    // server name -> (player -> time the connection was started)
+    private final Map<String, Map<UUID, Long>> inFlight = new ConcurrentHashMap<>();
+    private final Map<UUID, String> connecting = new ConcurrentHashMap<>();
+
+    public ConnectionTracker(QueueMain main) {
+        this.main = main;
+    }
+
+    /**
+     * Connects a player to a server, and tracks the connection until it finishes or times out
+     * @return a future that completes with true if the player made it to the server
+     */
+    public CompletableFuture<Boolean> connect(AdaptedPlayer player, AdaptedServer server) {
+        UUID uuid = player.getUniqueId();
+        String serverName = server.getName();
+
+        String previous = connecting.put(uuid, serverName);
+        if(previous != null) remove(uuid, previous);
+        inFlight.computeIfAbsent(serverName, k -> new ConcurrentHashMap<>()).put(uuid, System.currentTimeMillis());
+
+        long timeout = (long) (main.getConfig().getDouble("connect-timeout") * 1000);
+        CompletableFuture<Boolean> future;
+        try {
+            future = player.connect(server);
+        } catch(Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        if(timeout > 0) {
+            future = future.orTimeout(timeout, TimeUnit.MILLISECONDS);
+        }
+        return future.whenComplete((success, e) -> {
+            if(connecting.remove(uuid, serverName)) {
+                remove(uuid, serverName);
+            }
+            if(e instanceof TimeoutException) {
+                Debug.info("Connection for "+player.getName()+" to "+serverName+" timed out");
+                main.getEventHandler().onConnectFailed(player, server);
+            }
+        });
+    }
+
+    /**
+     * Checks if a connection started by ajQueue is still in progress for this player
+     */
+    public boolean isConnecting(UUID player) {
+        return connecting.containsKey(player);
+    }
+
+    /**
+     * Gets the number of connections to this server that are still in progress
+     */
+    public int getInFlight(String serverName) {
+        Map<UUID, Long> connections = inFlight.get(serverName);
+        return connections == null ? 0 : connections.size();
+    }
+
+    /**
+     * Gets the number of connections to this server that are still in progress and were started before a time.
+     * Used to count connections that are not already included in a ping's player count.
+     */
+    public int getInFlightStartedBefore(String serverName, long time) {
+        Map<UUID, Long> connections = inFlight.get(serverName);
+        if(connections == null) return 0;
+        int count = 0;
+        for(long started : connections.values()) {
+            if(started < time) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Checks if another connection can be started to this server without going over max-connecting-per-server
+     */
+    public boolean canConnect(AdaptedServer server) {
+        int limit = main.getConfig().getInt("max-connecting-per-server");
+        return limit <= 0 || getInFlight(server.getName()) < limit;
+    }
+
+    private void remove(UUID uuid, String serverName) {
+        Map<UUID, Long> connections = inFlight.get(serverName);
+        if(connections != null) connections.remove(uuid);
+    }
+}
@@ -17,6 +17,11 @@ public class DefaultQueueHolder extends QueueHolder {
         super(queueServer);
     }
 
+    @Override
+    protected boolean isVersioned() {
+        return true;
+    }
+
     @Override
     public String getIdentifier() {
         return "default";
@@ -25,22 +30,24 @@ public class DefaultQueueHolder extends QueueHolder {
     @Override
     public void addPlayer(QueuePlayer player) {
         queue.add(player);
+        markModified();
     }
 
     @Override
     public void addPlayer(QueuePlayer player, int position) {
         queue.add(position, player);
+        markModified();
     }
 
     @Override
     public void removePlayer(QueuePlayer player) {
-        queue.remove(player);
+        if(queue.remove(player)) markModified();
     }
 
     @Override
     public QueuePlayer findPlayer(UUID uuid) {
         for(QueuePlayer queuePlayer : queue) {
-            if(queuePlayer.getUniqueId().toString().equals(uuid.toString())) {
+            if(queuePlayer.getUniqueId().equals(uuid)) {
                 return queuePlayer;
             }
         }
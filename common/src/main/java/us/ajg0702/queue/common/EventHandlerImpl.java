@@ -11,9 +11,9 @@ import us.ajg0702.queue.api.players.QueuePlayer;
 import us.ajg0702.queue.api.queues.QueueServer;
 import us.ajg0702.queue.api.server.AdaptedServer;
 import us.ajg0702.queue.commands.commands.manage.PauseQueueServer;
-import us.ajg0702.queue.commands.commands.queue.QueueCommand;
 import us.ajg0702.queue.common.communication.CommunicationManager;
 import us.ajg0702.queue.common.players.QueuePlayerImpl;
+import us.ajg0702.queue.common.queues.QueueServerImpl;
 import us.ajg0702.queue.common.utils.Debug;
 
 import java.io.IOException;
@@ -29,13 +29,13 @@ public class EventHandlerImpl implements EventHandler {
     }
 
     @Override
-    public void handleMessage(AdaptedPlayer receivingPlayer, byte[] data) {
+    public void handleMessage(AdaptedPlayer receivingPlayer, String sourceServer, byte[] data) {
         if(!receivingPlayer.isConnected()) return;
         if(communicationManager == null) {
             communicationManager = new CommunicationManager(main);
         }
         try {
-            communicationManager.handle(receivingPlayer, data);
+            communicationManager.handle(receivingPlayer, sourceServer, data);
         } catch (IOException e) {
             main.getLogger().warning("An error occurred while reading data from spigot side:", e);
         }
@@ -67,6 +67,8 @@ public class EventHandlerImpl implements EventHandler {
         ImmutableList<QueuePlayer> queues = main.getQueueManager().findPlayerInQueues(player);
         for(QueuePlayer queuePlayer : queues) {
             ((QueuePlayerImpl) queuePlayer).setLeaveTime(System.currentTimeMillis());
+            // the platform might still say they are connected while this event runs
+            queuePlayer.setPlayer(null);
             List<String> svs = main.getConfig().getStringList("queue-servers");
             for(String s : svs) {
                 if(!s.contains(":")) continue;
@@ -77,9 +79,13 @@ public class EventHandlerImpl implements EventHandler {
                 }
             }
         }
+        ((QueueManagerImpl) main.getQueueManager()).scheduleOfflineExpiry(player.getUniqueId());
         main.getQueueManager().clear(player);
-        QueueCommand.cooldowns.remove(player);
+        main.getQueueCommandCooldowns().remove(player);
         main.serverTimeManager.removePlayer(player);
+        main.getSendScheduler().onPlayerLeave(player);
+        main.getMakeRoomIndex().onPlayerLeave(player);
+        ((QueueManagerImpl) main.getQueueManager()).getQueueServerWatcher().onPlayerLeave(player);
     }
 
     @Override
@@ -88,18 +94,32 @@ public class EventHandlerImpl implements EventHandler {
         for(QueuePlayer queuePlayer : alreadyqueued) {
             QueueServer server = queuePlayer.getQueueServer();
             int pos = queuePlayer.getPosition();
-            if((pos <= 1 && server.getServerNames().contains(player.getServerName())) || main.getConfig().getBoolean("remove-player-on-server-switch")) {
+            // players sent in a batch may not be first in the queue
+            boolean wasSent = pos <= 1 || getSendAttempts().isBeingSent(queuePlayer);
+            boolean arrived = wasSent && server.getServerNames().contains(player.getServerName());
+            if(arrived || main.getConfig().getBoolean("remove-player-on-server-switch")) {
+                if(arrived && server instanceof QueueServerImpl) {
+                    ((QueueServerImpl) server).getSendRateController()
+                            .recordSuccess(main.getPlatformMethods().getServer(player.getServerName()));
+                }
                 server.removePlayer(player);
                 server.setLastSentTime(System.currentTimeMillis());
-                main.getQueueManager().getSendingAttempts().remove(queuePlayer);
+                getSendAttempts().remove(queuePlayer);
                 main.getTaskManager().runNow(() -> {
                     main.call(new SuccessfulSendEvent(queuePlayer, player.getCurrentServer()));
                 });
+                if(arrived) main.getSendScheduler().wake(server);
             }
         }
 
+        main.getSendScheduler().onPlayerJoinServer(player);
+
         if(main.getConfig().getBoolean("include-server-switch-in-cooldown")) {
-            QueueCommand.cooldowns.put(player, System.currentTimeMillis());
+            main.getQueueCommandCooldowns().put(
+                    player,
+                    System.currentTimeMillis(),
+                    (long) (main.getConfig().getDouble("queue-command-cooldown") * 1000L)
+            );
         }
 
 
@@ -136,6 +156,8 @@ public class EventHandlerImpl implements EventHandler {
         }
 
         main.serverTimeManager.playerChanged(player);
+        main.getMakeRoomIndex().onPlayerJoinServer(player);
+        ((QueueManagerImpl) main.getQueueManager()).getQueueServerWatcher().onPlayerJoinServer(player);
 
     }
 
@@ -180,6 +202,7 @@ public class EventHandlerImpl implements EventHandler {
         for(QueueServer server : queuedServers) {
             if(!(server.getServerNames().contains(from.getName()))) continue;
             QueuePlayer queuePlayer = server.findPlayer(player);
+            recordSendFailure(server, queuePlayer, plainReason);
             if(queuePlayer.getPosition() != 1) continue;
             List<String> kickReasons = main.getConfig().getStringList("kick-reasons");
             boolean kickPlayer = main.getConfig().getBoolean("kick-kicked-players");
@@ -213,4 +236,24 @@ public class EventHandlerImpl implements EventHandler {
             }
         }
     }
+
+    @Override
+    public void onConnectFailed(AdaptedPlayer player, AdaptedServer server) {
+        Debug.info("Failed to connect "+player.getName()+" to "+server.getName());
+        for(QueueServer queueServer : main.getQueueManager().getPlayerQueues(player)) {
+            if(!queueServer.getServerNames().contains(server.getName())) continue;
+            recordSendFailure(queueServer, queueServer.findPlayer(player), "Could not connect");
+        }
+    }
+
+    private void recordSendFailure(QueueServer server, QueuePlayer queuePlayer, String reason) {
+        if(queuePlayer == null || !(server instanceof QueueServerImpl)) return;
+        if(!getSendAttempts().isBeingSent(queuePlayer)) return; // they weren't being sent
+        getSendAttempts().recordFailure(queuePlayer, reason);
+        ((QueueServerImpl) server).getSendRateController().recordFailure();
+    }
+
+    private SendAttemptTracker getSendAttempts() {
+        return ((QueueManagerImpl) main.getQueueManager()).getSendAttemptTracker();
+    }
 }
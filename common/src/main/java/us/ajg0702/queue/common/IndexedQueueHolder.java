@@ -0,0 +1,95 @@
+package us.ajg0702.queue.common;
+
+import com.google.common.collect.ImmutableList;
+import us.ajg0702.queue.api.players.QueuePlayer;
+import us.ajg0702.queue.api.queueholders.QueueHolder;
+import us.ajg0702.queue.api.queues.QueueServer;
+import us.ajg0702.queue.common.utils.RankedList;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A QueueHolder that keeps the queue in an order-statistic list with a uuid index.
+ * Lookups by uuid are O(1), and inserting, removing and getting positions are O(log n).
+ */
+public class IndexedQueueHolder extends QueueHolder {
+
+    private final RankedList<QueuePlayer> queue = new RankedList<>();
+    private final Map<UUID, RankedList.Node<QueuePlayer>> index = new HashMap<>();
+
+    public IndexedQueueHolder(QueueServer queueServer) {
+        super(queueServer);
+    }
+
+    @Override
+    protected boolean isVersioned() {
+        return true;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return "indexed";
+    }
+
+    @Override
+    public synchronized void addPlayer(QueuePlayer player) {
+        if(index.containsKey(player.getUniqueId())) return;
+        index.put(player.getUniqueId(), queue.add(player));
+        markModified();
+    }
+
+    @Override
+    public synchronized void addPlayer(QueuePlayer player, int position) {
+        if(index.containsKey(player.getUniqueId())) return;
+        position = Math.max(0, Math.min(position, queue.size()));
+        index.put(player.getUniqueId(), queue.add(position, player));
+        markModified();
+    }
+
+    @Override
+    public synchronized void removePlayer(QueuePlayer player) {
+        RankedList.Node<QueuePlayer> node = index.get(player.getUniqueId());
+        if(node == null || !node.getValue().equals(player)) return;
+        index.remove(player.getUniqueId());
+        queue.remove(node);
+        markModified();
+    }
+
+    @Override
+    public synchronized QueuePlayer findPlayer(UUID uuid) {
+        RankedList.Node<QueuePlayer> node = index.get(uuid);
+        return node == null ? null : node.getValue();
+    }
+
+    @Override
+    public synchronized QueuePlayer findPlayer(String name) {
+        for(RankedList.Node<QueuePlayer> node : index.values()) {
+            if(node.getValue().getName().equalsIgnoreCase(name)) {
+                return node.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized int getPosition(QueuePlayer player) {
+        RankedList.Node<QueuePlayer> node = index.get(player.getUniqueId());
+        if(node == null || !node.getValue().equals(player)) return 0;
+        return queue.indexOf(node)+1;
+    }
+
+    @Override
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public synchronized List<QueuePlayer> getAllPlayers() {
+        ImmutableList.Builder<QueuePlayer> builder = ImmutableList.builderWithExpectedSize(queue.size());
+        queue.forEach(builder::add);
+        return builder.build();
+    }
+}
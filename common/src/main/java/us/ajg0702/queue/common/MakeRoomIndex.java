@@ -0,0 +1,206 @@
+package us.ajg0702.queue.common;
+
+import us.ajg0702.queue.api.players.AdaptedPlayer;
+import us.ajg0702.queue.api.queues.QueueServer;
+import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.common.utils.Debug;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Keeps the players on each server sorted by their priority for a queue, and then by when they joined the server,
+ * so that picking who to move to make room doesn't have to look up everyone's priority every time.
+ * <p>
+ * An index for a queue and server is only built the first time ajqueue.make-room is used for it.
+ * After that it is kept up to date as players join and leave servers, and when their permissions change.
+ * Priorities older than make-room-priority-cache-time are looked up again before they are used.
+ */
+public class MakeRoomIndex {
+
+    private final QueueMain main;
+
+    // server name -> (queue name -> players on that server)
+    private final Map<String, Map<String, ServerIndex>> indexes = new ConcurrentHashMap<>();
+
+    public MakeRoomIndex(QueueMain main) {
+        this.main = main;
+    }
+
+    /**
+     * Finds the player to move off of a server to make room for someone in this queue.
+     * Only players with the lowest priority on the server are considered.
+     * @param kickLongest If the player that has been on the server the longest should be picked, instead of the newest
+     * @return the player to move, or null if there is nobody on the server
+     */
+    public AdaptedPlayer selectPlayer(QueueServer queueServer, AdaptedServer server, boolean kickLongest) {
+        ServerIndex index = indexes.computeIfAbsent(server.getName(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(queueServer.getName(), k -> new ServerIndex());
+
+        List<AdaptedPlayer> players = server.getPlayers();
+        if(index.byPlayer.size() != players.size()) {
+            // we missed a join or leave (or this is the first time), so catch up
+            Set<UUID> online = new HashSet<>();
+            for(AdaptedPlayer player : players) {
+                online.add(player.getUniqueId());
+                if(!index.byPlayer.containsKey(player.getUniqueId())) {
+                    index.put(score(queueServer, server, player));
+                }
+            }
+            for(UUID uuid : new ArrayList<>(index.byPlayer.keySet())) {
+                if(!online.contains(uuid)) index.remove(uuid);
+            }
+        }
+
+        // players whose permissions changed might have a lower priority now, so they need to be sorted again before picking
+        for(UUID uuid : index.takeExpired()) {
+            AdaptedPlayer player = main.getPlatformMethods().getPlayer(uuid);
+            if(player == null || !server.getName().equals(player.getServerName())) {
+                index.remove(uuid);
+                continue;
+            }
+            index.put(score(queueServer, server, player));
+        }
+
+        long maxAge = (long) (main.getConfig().getDouble("make-room-priority-cache-time") * 1000);
+        while(true) {
+            Entry entry = index.select(kickLongest);
+            if(entry == null) return null;
+
+            AdaptedPlayer player = main.getPlatformMethods().getPlayer(entry.uuid);
+            if(player == null || !player.isConnected() || !server.getName().equals(player.getServerName())) {
+                index.remove(entry.uuid);
+                continue;
+            }
+            if(System.currentTimeMillis() - entry.scoredAt > maxAge) {
+                index.put(score(queueServer, server, player));
+                continue;
+            }
+            return player;
+        }
+    }
+
+    /**
+     * Moves a player to the indexes of the server they just joined
+     */
+    public void onPlayerJoinServer(AdaptedPlayer player) {
+        forget(player.getUniqueId());
+        String serverName = player.getServerName();
+        if(serverName == null) return;
+        Map<String, ServerIndex> serverIndexes = indexes.get(serverName);
+        if(serverIndexes == null || main.getQueueManager() == null) return;
+        AdaptedServer server = main.getPlatformMethods().getServer(serverName);
+        if(server == null) return;
+        for(Map.Entry<String, ServerIndex> queueIndex : serverIndexes.entrySet()) {
+            QueueServer queueServer = main.getQueueManager().findServer(queueIndex.getKey());
+            if(queueServer == null) continue;
+            queueIndex.getValue().put(score(queueServer, server, player));
+        }
+    }
+
+    public void onPlayerLeave(AdaptedPlayer player) {
+        forget(player.getUniqueId());
+    }
+
+    /**
+     * Makes the player's priority be looked up again the next time it is needed.
+     * Called when a player's permissions change.
+     */
+    public void invalidate(UUID uuid) {
+        for(Map<String, ServerIndex> serverIndexes : indexes.values()) {
+            for(ServerIndex index : serverIndexes.values()) {
+                index.expire(uuid);
+            }
+        }
+    }
+
+    /**
+     * Drops every index, for when the servers or queues are reloaded
+     */
+    public void clear() {
+        indexes.clear();
+    }
+
+    private void forget(UUID uuid) {
+        for(Map<String, ServerIndex> serverIndexes : indexes.values()) {
+            for(ServerIndex index : serverIndexes.values()) {
+                index.remove(uuid);
+            }
+        }
+    }
+
+    private Entry score(QueueServer queueServer, AdaptedServer server, AdaptedPlayer player) {
+        int priority = main.getLogic().getHighestPriority(queueServer, server, player);
+        long switchTime = main.getServerTimeManager().getLastServerChange(player);
+        Debug.info("[make-room] "+player.getName()+" has priority "+priority+" for "+queueServer.getName());
+        return new Entry(priority, switchTime, player.getUniqueId(), System.currentTimeMillis());
+    }
+
+    private static class ServerIndex {
+        // lowest priority first, then the players that have been on the server the longest
+        private final NavigableSet<Entry> ordered = new ConcurrentSkipListSet<>();
+        private final Map<UUID, Entry> byPlayer = new ConcurrentHashMap<>();
+        private final Set<UUID> expired = new HashSet<>();
+
+        private synchronized void put(Entry entry) {
+            Entry previous = byPlayer.put(entry.uuid, entry);
+            if(previous != null) ordered.remove(previous);
+            ordered.add(entry);
+            expired.remove(entry.uuid);
+        }
+
+        private synchronized void remove(UUID uuid) {
+            Entry previous = byPlayer.remove(uuid);
+            if(previous != null) ordered.remove(previous);
+            expired.remove(uuid);
+        }
+
+        private synchronized void expire(UUID uuid) {
+            if(byPlayer.containsKey(uuid)) expired.add(uuid);
+        }
+
+        private synchronized List<UUID> takeExpired() {
+            List<UUID> taken = new ArrayList<>(expired);
+            expired.clear();
+            return taken;
+        }
+
+        private Entry select(boolean kickLongest) {
+            Entry lowest;
+            try {
+                lowest = ordered.first();
+            } catch(NoSuchElementException e) {
+                return null;
+            }
+            if(kickLongest) return lowest;
+            // the newest player with the lowest priority
+            Entry after = new Entry(lowest.priority, Long.MAX_VALUE, new UUID(Long.MAX_VALUE, Long.MAX_VALUE), 0);
+            Entry newest = ordered.floor(after);
+            return newest == null ? lowest : newest;
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        private final int priority;
+        private final long switchTime;
+        private final UUID uuid;
+        private final long scoredAt;
+
+        private Entry(int priority, long switchTime, UUID uuid, long scoredAt) {
+            this.priority = priority;
+            this.switchTime = switchTime;
+            this.uuid = uuid;
+            this.scoredAt = scoredAt;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int c = Integer.compare(priority, o.priority);
+            if(c != 0) return c;
+            c = Long.compare(switchTime, o.switchTime);
+            if(c != 0) return c;
+            return uuid.compareTo(o.uuid);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package us.ajg0702.queue.common;
+
+import us.ajg0702.queue.api.queues.QueueServer;
+import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.api.server.AdaptedServerPing;
+import us.ajg0702.queue.common.utils.TimingWheel;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pings each server on its own schedule, depending on how much we care about it right now.
+ * <ul>
+ *     <li>Servers that players are queued for, or that are almost full, are pinged at the normal rate
+ *     (half of wait-time, but not faster than minimum-ping-time)</li>
+ *     <li>Servers that nobody is queued for, or that are sending heartbeats, are pinged every idle-ping-time</li>
+ *     <li>Offline servers are pinged half as often after each failed ping,
+ *     up to offline-time (or idle-ping-time if players are queued for them, so we notice when they come back)</li>
+ * </ul>
+ * Every interval is randomly made up to 10% shorter or longer, so that the pings don't all happen at once.
+ */
+public class PingScheduler {
+
+    // a server counts as almost full once this much of it is used
+    private static final double NEAR_FULL = 0.9;
+    private static final double JITTER = 0.1;
+
+    private final QueueMain main;
+
+    // lowercase server name -> state
+    private final Map<String, ServerState> states = new ConcurrentHashMap<>();
+    private volatile Set<String> queuedServers = Collections.emptySet();
+
+    public PingScheduler(QueueMain main) {
+        this.main = main;
+    }
+
+    public static boolean isEnabled(QueueMain main) {
+        return main.getConfig().getDouble("idle-ping-time") > 0;
+    }
+
+    /**
+     * Looks for servers that have been added or removed, and updates which servers have players queued for them.
+     * Called every time the update task runs.
+     */
+    public void update() {
+        Set<String> queued = new HashSet<>();
+        for(QueueServer queueServer : main.getQueueManager().getServers()) {
+            if(queueServer.getQueueSize() == 0) continue;
+            for(AdaptedServer server : queueServer.getServers()) {
+                queued.add(server.getName().toLowerCase(Locale.ROOT));
+            }
+        }
+        Set<String> previouslyQueued = queuedServers;
+        queuedServers = queued;
+
+        Set<String> current = new HashSet<>();
+        long fast = getFastInterval();
+        for(String key : queued) {
+            if(previouslyQueued.contains(key)) continue;
+            // someone just queued for an idle server, so don't make them wait for its next idle ping
+            ServerState state = states.get(key);
+            if(state != null) wake(key, state, fast);
+        }
+        for(AdaptedServer server : main.getPlatformMethods().getServers()) {
+            String key = server.getName().toLowerCase(Locale.ROOT);
+            current.add(key);
+            states.computeIfAbsent(key, k -> {
+                ServerState state = new ServerState(server.getName());
+                // spread the first pings of all servers over one interval
+                schedule(k, state, ThreadLocalRandom.current().nextLong(fast + 1));
+                return state;
+            });
+        }
+        states.entrySet().removeIf(entry -> {
+            if(current.contains(entry.getKey())) return false;
+            entry.getValue().cancel();
+            return true;
+        });
+    }
+
+    /**
+     * Stops pinging every server. Used when the scheduler is disabled.
+     */
+    public void clear() {
+        states.values().forEach(ServerState::cancel);
+        states.clear();
+    }
+
+    /**
+     * Gets how many servers are currently in each tier (fast, idle, offline). For debugging.
+     */
+    public Map<String, Integer> getTierCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put("fast", 0);
+        counts.put("idle", 0);
+        counts.put("offline", 0);
+        for(ServerState state : states.values()) {
+            counts.merge(state.tier, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private void wake(String key, ServerState state, long fast) {
+        synchronized(state) {
+            if(state.pinging || !state.tier.equals("idle")) return;
+            state.cancel();
+            schedule(key, state, ThreadLocalRandom.current().nextLong(fast + 1));
+        }
+    }
+
+    private void schedule(String key, ServerState state, long delay) {
+        TimingWheel wheel = main.getTaskManager().getTimingWheel();
+        synchronized(state) {
+            int generation = ++state.generation;
+            state.timeout = wheel.schedule(() -> ping(key, state, generation), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void ping(String key, ServerState state, int generation) {
+        synchronized(state) {
+            // the ping was re-scheduled after this timer already went off
+            if(state.generation != generation) return;
+            state.pinging = true;
+        }
+        if(states.get(key) != state) return; // the server was removed
+        AdaptedServer server = main.getPlatformMethods().getServer(state.name);
+        if(server == null) {
+            states.remove(key, state);
+            return;
+        }
+        boolean debug = main.getConfig().getBoolean("pinger-debug");
+        main.getServerPinger().ping(server).whenComplete((ping, e) -> {
+            AdaptedServerPing result = e == null ? ping : null;
+            main.getSendScheduler().onPing(server, result);
+            state.failures = result == null ? state.failures + 1 : 0;
+            state.pinging = false;
+            if(states.get(key) != state) return;
+            long next = getInterval(key, server, state);
+            if(debug) {
+                main.getLogger().info("[pinger] ["+server.getName()+"] Next ping in "+next+"ms ("+state.tier+")");
+            }
+            schedule(key, state, next);
+        });
+    }
+
+    private long getInterval(String key, AdaptedServer server, ServerState state) {
+        long fast = getFastInterval();
+        long idle = Math.max((long) (main.getConfig().getDouble("idle-ping-time") * 1000), fast);
+        boolean queued = queuedServers.contains(key);
+
+        double interval;
+        if(state.failures > 0) {
+            state.tier = "offline";
+            long max = queued ? idle : Math.max(main.getConfig().getInt("offline-time") * 1000L, idle);
+            interval = Math.min(fast * Math.pow(2, Math.min(state.failures - 1, 30)), max);
+        } else if(server.getFreshHeartbeat().isPresent()) {
+            // the spigot-side is already telling us everything we need, so the ping only has to keep the motd up to date
+            state.tier = "idle";
+            interval = idle;
+        } else if(queued || isNearFull(server)) {
+            state.tier = "fast";
+            interval = fast;
+        } else {
+            state.tier = "idle";
+            interval = idle;
+        }
+        double jitter = 1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+        return (long) (interval * jitter);
+    }
+
+    private boolean isNearFull(AdaptedServer server) {
+        if(!server.getLastPing().isPresent()) return false;
+        int max = server.getMaxPlayers();
+        return max > 0 && server.getPlayerCount() >= max * NEAR_FULL;
+    }
+
+    private long getFastInterval() {
+        return (long) (Math.max(main.getTimeBetweenPlayers()/2, main.getConfig().getDouble("minimum-ping-time"))*1000L);
+    }
+
+    private static class ServerState {
+        private final String name;
+        private volatile TimingWheel.Timeout timeout;
+        private volatile int failures = 0;
+        private volatile String tier = "fast";
+        private int generation = 0;
+        private volatile boolean pinging = false;
+
+        private ServerState(String name) {
+            this.name = name;
+        }
+
+        private void cancel() {
+            TimingWheel.Timeout timeout = this.timeout;
+            if(timeout != null) timeout.cancel();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package us.ajg0702.queue.common;
+
+import com.google.common.collect.ImmutableList;
+import us.ajg0702.queue.api.players.QueuePlayer;
+import us.ajg0702.queue.api.queueholders.QueueHolder;
+import us.ajg0702.queue.api.queues.QueueServer;
+import us.ajg0702.queue.common.utils.RankedList;
+
+import java.util.*;
+
+/**
+ * A QueueHolder that keeps one FIFO bucket per priority level, highest priority first.
+ * Priority inserts are O(log P) (P being the number of priority levels in the queue),
+ * and positions are the sum of the sizes of the higher buckets plus the rank inside the player's bucket.
+ * Players are always kept in priority order, so inserts at a position are clamped to the player's bucket.
+ */
+public class PriorityQueueHolder extends QueueHolder {
+
+    private final NavigableMap<Integer, RankedList<QueuePlayer>> buckets = new TreeMap<>(Comparator.reverseOrder());
+    private final Map<UUID, RankedList.Node<QueuePlayer>> index = new HashMap<>();
+    private int size = 0;
+
+    public PriorityQueueHolder(QueueServer queueServer) {
+        super(queueServer);
+    }
+
+    @Override
+    protected boolean isVersioned() {
+        return true;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return "priority";
+    }
+
+    @Override
+    public synchronized void addPlayer(QueuePlayer player) {
+        addPlayerByPriority(player);
+    }
+
+    @Override
+    public synchronized void addPlayer(QueuePlayer player, int position) {
+        if(index.containsKey(player.getUniqueId())) return;
+        RankedList<QueuePlayer> bucket = buckets.computeIfAbsent(player.getPriority(), k -> new RankedList<>());
+        int bucketPosition = position - getBucketStart(player.getPriority());
+        bucketPosition = Math.max(0, Math.min(bucketPosition, bucket.size()));
+        index.put(player.getUniqueId(), bucket.add(bucketPosition, player));
+        size++;
+        markModified();
+    }
+
+    @Override
+    public synchronized void addPlayerByPriority(QueuePlayer player) {
+        if(index.containsKey(player.getUniqueId())) return;
+        RankedList<QueuePlayer> bucket = buckets.computeIfAbsent(player.getPriority(), k -> new RankedList<>());
+        index.put(player.getUniqueId(), bucket.add(player));
+        size++;
+        markModified();
+    }
+
+    @Override
+    public synchronized void removePlayer(QueuePlayer player) {
+        RankedList.Node<QueuePlayer> node = index.get(player.getUniqueId());
+        if(node == null || !node.getValue().equals(player)) return;
+        index.remove(player.getUniqueId());
+        int priority = player.getPriority();
+        RankedList<QueuePlayer> bucket = buckets.get(priority);
+        bucket.remove(node);
+        if(bucket.size() == 0) buckets.remove(priority);
+        size--;
+        markModified();
+    }
+
+    @Override
+    public synchronized QueuePlayer findPlayer(UUID uuid) {
+        RankedList.Node<QueuePlayer> node = index.get(uuid);
+        return node == null ? null : node.getValue();
+    }
+
+    @Override
+    public synchronized QueuePlayer findPlayer(String name) {
+        for(RankedList.Node<QueuePlayer> node : index.values()) {
+            if(node.getValue().getName().equalsIgnoreCase(name)) {
+                return node.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized int getPosition(QueuePlayer player) {
+        RankedList.Node<QueuePlayer> node = index.get(player.getUniqueId());
+        if(node == null || !node.getValue().equals(player)) return 0;
+        int priority = player.getPriority();
+        return getBucketStart(priority) + buckets.get(priority).indexOf(node) + 1;
+    }
+
+    @Override
+    public synchronized int getQueueSize() {
+        return size;
+    }
+
+    @Override
+    public synchronized List<QueuePlayer> getAllPlayers() {
+        ImmutableList.Builder<QueuePlayer> builder = ImmutableList.builderWithExpectedSize(size);
+        for(RankedList<QueuePlayer> bucket : buckets.values()) {
+            bucket.forEach(builder::add);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the number of players in buckets with a higher priority than this one
+     */
+    private int getBucketStart(int priority) {
+        int start = 0;
+        for(RankedList<QueuePlayer> bucket : buckets.headMap(priority, false).values()) {
+            start += bucket.size();
+        }
+        return start;
+    }
+}
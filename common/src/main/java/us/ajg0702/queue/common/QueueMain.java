@@ -4,9 +4,14 @@ import org.spongepowered.configurate.ConfigurateException;
 import us.ajg0702.queue.api.*;
 import us.ajg0702.queue.api.events.Event;
 import us.ajg0702.queue.api.events.utils.EventReceiver;
+import us.ajg0702.queue.api.players.AdaptedPlayer;
 import us.ajg0702.queue.api.premium.Logic;
 import us.ajg0702.queue.api.premium.LogicGetter;
+import us.ajg0702.queue.api.premium.PermissionHook;
+import us.ajg0702.queue.api.server.ServerHealth;
 import us.ajg0702.queue.api.util.QueueLogger;
+import us.ajg0702.queue.common.persistence.QueueJournal;
+import us.ajg0702.queue.common.utils.ExpiringMap;
 import us.ajg0702.queue.common.utils.LogConverter;
 import us.ajg0702.queue.logic.LogicGetterImpl;
 import us.ajg0702.utils.common.Config;
@@ -14,6 +19,7 @@ import us.ajg0702.utils.common.Messages;
 import us.ajg0702.utils.common.Updater;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
@@ -85,11 +91,39 @@ public class QueueMain extends AjQueueAPI {
         return logger;
     }
 
-    private final TaskManager taskManager = new TaskManager(this);
+    private final TaskManager taskManager;
     public TaskManager getTaskManager() {
         return taskManager;
     }
 
+    private final ExpiringMap<AdaptedPlayer> queueCommandCooldowns;
+    /**
+     * Gets when each player last used /queue (or switched servers, if include-server-switch-in-cooldown is enabled)
+     */
+    public ExpiringMap<AdaptedPlayer> getQueueCommandCooldowns() {
+        return queueCommandCooldowns;
+    }
+
+    private final MakeRoomIndex makeRoomIndex = new MakeRoomIndex(this);
+    public MakeRoomIndex getMakeRoomIndex() {
+        return makeRoomIndex;
+    }
+
+    private final SendScheduler sendScheduler = new SendScheduler(this);
+    public SendScheduler getSendScheduler() {
+        return sendScheduler;
+    }
+
+    private final ServerPinger serverPinger = new ServerPinger(this);
+    public ServerPinger getServerPinger() {
+        return serverPinger;
+    }
+
+    private final PingScheduler pingScheduler = new PingScheduler(this);
+    public PingScheduler getPingScheduler() {
+        return pingScheduler;
+    }
+
     private final EventHandler eventHandler = new EventHandlerImpl(this);
     @Override
     public EventHandler getEventHandler() {
@@ -114,6 +148,20 @@ public class QueueMain extends AjQueueAPI {
         return protocolNameManager;
     }
 
+    private QueueStateActor queueStateActor;
+    /**
+     * Gets the thread that all queue changes are run on
+     * @return the QueueStateActor, or null if single-writer-queue-state is disabled
+     */
+    public QueueStateActor getQueueStateActor() {
+        return queueStateActor;
+    }
+
+    private QueueJournal queueJournal;
+    public QueueJournal getQueueJournal() {
+        return queueJournal;
+    }
+
     private Updater updater;
     public Updater getUpdater() {
         return updater;
@@ -131,8 +179,15 @@ public class QueueMain extends AjQueueAPI {
 
     @Override
     public void shutdown() {
+        getPermissionHookRegistry().getRegisteredHooks().forEach(PermissionHook::shutdown);
         taskManager.shutdown();
         updater.shutdown();
+        if(queueStateActor != null) {
+            queueStateActor.shutdown();
+        }
+        if(queueJournal != null) {
+            queueJournal.shutdown();
+        }
     }
 
 
@@ -165,6 +220,11 @@ public class QueueMain extends AjQueueAPI {
         return taskManager.getServersUpdateExecutor();
     }
 
+    @Override
+    public ServerHealth getServerHealth(String serverName) {
+        return serverPinger.getHealth(serverName);
+    }
+
 
     private final File dataFolder;
 
@@ -187,6 +247,9 @@ public class QueueMain extends AjQueueAPI {
 
 
         this.logger = logger;
+        // after the logger, since the timing wheel logs errors to it
+        taskManager = new TaskManager(this);
+        queueCommandCooldowns = new ExpiringMap<>(taskManager.getTimingWheel());
         this.platformMethods = platformMethods;
         this.dataFolder = dataFolder;
 
@@ -200,8 +263,6 @@ public class QueueMain extends AjQueueAPI {
 
         constructMessages();
 
-        getQueueHolderRegistry().register("default", DefaultQueueHolder.class);
-
         logic = logicGetter.constructLogic();
         aliasManager = logicGetter.constructAliasManager(config);
 
@@ -213,6 +274,22 @@ public class QueueMain extends AjQueueAPI {
 
         setTimeBetweenPlayers();
 
+        if(config.getBoolean("single-writer-queue-state")) {
+            queueStateActor = new QueueStateActor(logger);
+        }
+
+        getQueueHolderRegistry().register("default", queueStateActor == null ? DefaultQueueHolder.class : SingleWriterQueueHolder.class);
+        getQueueHolderRegistry().register("indexed", IndexedQueueHolder.class);
+        getQueueHolderRegistry().register("priority", PriorityQueueHolder.class);
+
+        if(config.getBoolean("persist-queues")) {
+            try {
+                queueJournal = new QueueJournal(this, dataFolder);
+            } catch (IOException e) {
+                logger.warning("Unable to open the queue journal. Queues will not be saved across restarts!", e);
+            }
+        }
+
         queueManager = new QueueManagerImpl(this);
 
         protocolNameManager = new ProtocolNameManagerImpl(config, platformMethods);
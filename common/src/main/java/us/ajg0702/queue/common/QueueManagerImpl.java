@@ -8,22 +8,31 @@ import us.ajg0702.queue.api.events.PreQueueEvent;
 import us.ajg0702.queue.api.players.AdaptedPlayer;
 import us.ajg0702.queue.api.players.QueuePlayer;
 import us.ajg0702.queue.api.premium.Logic;
+import us.ajg0702.queue.api.queueholders.QueueHolder;
 import us.ajg0702.queue.api.queues.QueueServer;
 import us.ajg0702.queue.api.server.AdaptedServer;
-import us.ajg0702.queue.commands.commands.manage.PauseQueueServer;
+import us.ajg0702.queue.common.persistence.QueueJournal;
+import us.ajg0702.queue.common.persistence.RestoredQueue;
 import us.ajg0702.queue.common.players.QueuePlayerImpl;
+import us.ajg0702.queue.common.queues.HeadCursor;
 import us.ajg0702.queue.common.queues.QueueServerImpl;
+import us.ajg0702.queue.common.queues.SendRateController;
 import us.ajg0702.queue.common.utils.Debug;
+import us.ajg0702.queue.common.utils.ExpiringMap;
+import us.ajg0702.queue.common.utils.TimingWheel;
 import us.ajg0702.utils.common.Messages;
 import us.ajg0702.utils.common.TimeUtils;
 
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
 
 public class QueueManagerImpl implements QueueManager {
 
-    private CopyOnWriteArrayList<QueueServer> servers = new CopyOnWriteArrayList<>();
+    private volatile ImmutableList<QueueServer> servers = ImmutableList.of();
+
+    private volatile Map<UUID, ImmutableList<QueuePlayer>> playerIndex = new ConcurrentHashMap<>();
 
     private final QueueMain main;
     private final Messages msgs;
@@ -31,6 +40,13 @@ public class QueueManagerImpl implements QueueManager {
     public QueueManagerImpl(QueueMain main) {
         this.main = main;
         this.msgs = main.getMessages();
+        this.connectionTracker = new ConnectionTracker(main);
+        this.sendAttempts = new SendAttemptTracker(main);
+        this.queueServerWatcher = new QueueServerWatcher(main, this);
+
+        TimingWheel wheel = main.getTaskManager().getTimingWheel();
+        this.sendingNowAntiSpam = new ExpiringMap<>(wheel);
+        this.makeRoomAntispam = new ExpiringMap<>(wheel);
 
         int delay = main.getConfig().getBoolean("wait-to-load-servers") ? main.getConfig().getInt("wait-to-load-servers-delay") : 0;
 
@@ -47,10 +63,12 @@ public class QueueManagerImpl implements QueueManager {
             if(previousPlayers.size() > 0) {
                 main.getLogger().info("Adding "+previousPlayers.size()+" players back to the queue for "+server.getName());
             }
-            QueueServer queueServer = new QueueServerImpl(server.getName(), main, server, previousPlayers);
+            QueueServerImpl queueServer = new QueueServerImpl(server.getName(), main, server, previousPlayers);
             if(previousServer != null) {
                 queueServer.setPaused(previousServer.isPaused());
                 queueServer.setLastSentTime(previousServer.getLastSentTime());
+            } else {
+                restoreQueue(queueServer);
             }
             result.add(queueServer);
         }
@@ -94,13 +112,17 @@ public class QueueManagerImpl implements QueueManager {
             }
 
 
-            QueueServer previousServer = main.getQueueManager().findServer(groupName);
+            QueueServer previousServer = findServer(groupName);
             List<QueuePlayer> previousPlayers = previousServer == null ? new ArrayList<>() : previousServer.getQueue();
             if(previousPlayers.size() > 0) {
                 main.getLogger().info("Adding "+previousPlayers.size()+" players back to the queue for "+groupName);
             }
 
-            result.add(new QueueServerImpl(groupName, main, groupServers, previousPlayers));
+            QueueServerImpl groupServer = new QueueServerImpl(groupName, main, groupServers, previousPlayers);
+            if(previousServer == null) {
+                restoreQueue(groupServer);
+            }
+            result.add(groupServer);
         }
 
         List<String> supportedProtocolsRaw = main.getConfig().getStringList("supported-protocols");
@@ -142,6 +164,17 @@ public class QueueManagerImpl implements QueueManager {
         return result;
     }
 
+    private void restoreQueue(QueueServerImpl queueServer) {
+        QueueJournal journal = main.getQueueJournal();
+        if(journal == null) return;
+        RestoredQueue restoredQueue = journal.takeRestored(queueServer.getName());
+        if(restoredQueue == null) return;
+        int restored = queueServer.restore(restoredQueue);
+        if(restored > 0) {
+            main.getLogger().info("Restored "+restored+" players to the queue for "+queueServer.getName());
+        }
+    }
+
     @Override
     public boolean addToQueue(AdaptedPlayer player, QueueServer server) {
         if(player == null || server == null) {
@@ -219,7 +252,6 @@ public class QueueManagerImpl implements QueueManager {
 
         // Player should be added!
 
-        ImmutableList<QueuePlayer> list = server.getQueue();
         QueuePlayer queuePlayer;
         AdaptedServer ideal = server.getIdealServer(player);
         if(main.isPremium()) {
@@ -230,33 +262,21 @@ public class QueueManagerImpl implements QueueManager {
             priority = Math.max(priority, Logic.getUnJoinablePriorities(server, ideal, player) > 0 ? 1 : 0);
             int maxOfflineTime = player.hasPermission("ajqueue.stayqueued") ? 60 : 0;
             queuePlayer = new QueuePlayerImpl(player, server, priority, maxOfflineTime);
-            if(
-                    priority == 1 &&
-                    server.getQueue().size() > 0
-            ) {
-                int i = 0;
-                for(QueuePlayer ply : list) {
-                    if(!ply.hasPriority()) {
-                        server.addPlayer(queuePlayer, i);
-                        break;
-                    }
-                    i++;
-                }
-            }
-
-            if(!list.contains(queuePlayer)) {
+            if(priority == 1) {
+                server.addPlayerByPriority(queuePlayer);
+            } else {
                 server.addPlayer(queuePlayer);
             }
         }
 
-        list = server.getQueue();
+        ImmutableList<QueuePlayer> list = server.getQueue();
 
         int pos = queuePlayer.getPosition();
         int len = list.size();
 
         boolean sendInstant = server.isJoinable(player);
         boolean sendInstantp = list.size() <= 1 && server.isJoinable(player);
-        boolean timeGood = !main.getConfig().getBoolean("check-last-player-sent-time") || server.getLastSentTime() > Math.floor(main.getTimeBetweenPlayers() * 1000);
+        boolean timeGood = !main.getConfig().getBoolean("check-last-player-sent-time") || server.getLastSentTime() > Math.floor(server.getSendInterval() * 1000);
         boolean alwaysSendInstantly = main.getConfig().getStringList("send-instantly").contains(server.getName());
         boolean hasBypass = main.getLogic().hasAnyBypass(player, server.getName());
 
@@ -264,7 +284,7 @@ public class QueueManagerImpl implements QueueManager {
 
         Debug.info("should send instantly (" + sentInstantly + "): " + alwaysSendInstantly + " || (" + sendInstant + " && (" + sendInstantp + " && " + timeGood + ") && " + (!hasBypass) + ")");
         if(sentInstantly) {
-            if(!hasBypass) {
+            if(!hasBypass && !(sendInstant && sendInstantly(server, queuePlayer, ideal))) {
                 sendPlayers(server);
             }
             if(!msgs.isEmpty("status.now-in-empty-queue")) {
@@ -318,7 +338,7 @@ public class QueueManagerImpl implements QueueManager {
 
     @Override
     public ImmutableList<QueueServer> getServers() {
-        return ImmutableList.copyOf(servers);
+        return servers;
     }
 
     @Override
@@ -357,7 +377,146 @@ public class QueueManagerImpl implements QueueManager {
             main.getLogger().severe("[MAN] Config is null");
         }
 
-        servers = new CopyOnWriteArrayList<>(buildServers());
+        QueueStateActor actor = main.getQueueStateActor();
+        if(actor != null && !actor.isActorThread()) {
+            actor.run(this::reloadServers);
+            return;
+        }
+
+        servers = ImmutableList.copyOf(buildServers());
+        rebuildPlayerIndex();
+        List<QueuePlayer> queued = new ArrayList<>();
+        for(QueueServer server : servers) {
+            queued.addAll(server.getQueue());
+        }
+        sendAttempts.retainAll(queued);
+        queueServerWatcher.reload();
+        for(UUID uuid : playerIndex.keySet()) {
+            scheduleOfflineExpiry(uuid);
+        }
+        main.getMakeRoomIndex().clear();
+
+        QueueJournal journal = main.getQueueJournal();
+        if(journal != null) journal.finishRestore();
+    }
+
+    /**
+     * Adds a QueuePlayer to the uuid -> queues index.
+     * Called by QueueServerImpl when a player is added to a queue.
+     */
+    public void indexPlayer(QueuePlayer queuePlayer) {
+        playerIndex.compute(queuePlayer.getUniqueId(), (uuid, list) -> {
+            if(list == null) return ImmutableList.of(queuePlayer);
+            if(list.contains(queuePlayer)) return list;
+            return ImmutableList.<QueuePlayer>builder().addAll(list).add(queuePlayer).build();
+        });
+    }
+
+    /**
+     * Removes a QueuePlayer from the uuid -> queues index.
+     * Called by QueueServerImpl when a player is removed from a queue.
+     */
+    public void unindexPlayer(QueuePlayer queuePlayer) {
+        playerIndex.computeIfPresent(queuePlayer.getUniqueId(), (uuid, list) -> {
+            if(!list.contains(queuePlayer)) return list;
+            ImmutableList.Builder<QueuePlayer> builder = ImmutableList.builder();
+            for(QueuePlayer other : list) {
+                if(other != queuePlayer) builder.add(other);
+            }
+            ImmutableList<QueuePlayer> newList = builder.build();
+            return newList.isEmpty() ? null : newList;
+        });
+    }
+
+    /**
+     * Removes the player from the queues they have been offline in for too long,
+     * and sets a timer for the next time that could happen.
+     * Called when a player leaves, and for every queued player when the servers are reloaded.
+     */
+    public void scheduleOfflineExpiry(UUID uuid) {
+        TimingWheel.Timeout previous = offlineTimers.remove(uuid);
+        if(previous != null) previous.cancel();
+
+        ImmutableList<QueuePlayer> queued = playerIndex.get(uuid);
+        if(queued == null) return;
+        long next = Long.MAX_VALUE;
+        for(QueuePlayer queuePlayer : queued) {
+            if(queuePlayer.getPlayer() != null) continue;
+            if(main.getLogic().playerDisconnectedTooLong(queuePlayer)) {
+                queuePlayer.getQueueServer().removePlayer(queuePlayer);
+                continue;
+            }
+            next = Math.min(next, queuePlayer.getMaxOfflineTime()*1000L - queuePlayer.getTimeSinceOnline());
+        }
+        if(next == Long.MAX_VALUE) return;
+
+        TimingWheel wheel = main.getTaskManager().getTimingWheel();
+        // one tick late, so that they are definitely over the limit when it runs
+        offlineTimers.put(uuid, wheel.schedule(() -> scheduleOfflineExpiry(uuid), Math.max(next, 0) + wheel.getTickMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Replaces the whole index. Only safe while nothing else changes the queues, so only used by reloadServers
+     */
+    private void rebuildPlayerIndex() {
+        playerIndex = buildPlayerIndex();
+    }
+
+    private Map<UUID, ImmutableList<QueuePlayer>> buildPlayerIndex() {
+        Map<UUID, List<QueuePlayer>> lists = new HashMap<>();
+        for(QueueServer server : servers) {
+            for(QueuePlayer queuePlayer : server.getQueue()) {
+                lists.computeIfAbsent(queuePlayer.getUniqueId(), k -> new ArrayList<>()).add(queuePlayer);
+            }
+        }
+        Map<UUID, ImmutableList<QueuePlayer>> index = new ConcurrentHashMap<>();
+        lists.forEach((uuid, list) -> index.put(uuid, ImmutableList.copyOf(list)));
+        return index;
+    }
+
+    /**
+     * Compares the uuid -> queues index to the actual queues, logs any differences and fixes them.
+     * Only meant for debugging, since it scans every queue.
+     * <p>
+     * Players can join or leave queues while this runs, so each difference is checked again against the current queues
+     * while holding that player's index entry, and only that entry is fixed.
+     * @return the number of players whose index entry was wrong
+     */
+    public int checkPlayerIndex() {
+        Map<UUID, ImmutableList<QueuePlayer>> expected = buildPlayerIndex();
+        Set<UUID> uuids = new HashSet<>(expected.keySet());
+        uuids.addAll(playerIndex.keySet());
+        int mismatches = 0;
+        for(UUID uuid : uuids) {
+            Set<QueuePlayer> expectedPlayers = new HashSet<>(expected.getOrDefault(uuid, ImmutableList.of()));
+            Set<QueuePlayer> actualPlayers = new HashSet<>(playerIndex.getOrDefault(uuid, ImmutableList.of()));
+            if(expectedPlayers.equals(actualPlayers)) continue;
+            if(repairPlayerIndex(uuid)) mismatches++;
+        }
+        return mismatches;
+    }
+
+    /**
+     * Re-checks one player's index entry against the current queues, and fixes it if it is wrong
+     * @return true if the entry was wrong
+     */
+    private boolean repairPlayerIndex(UUID uuid) {
+        boolean[] repaired = {false};
+        playerIndex.compute(uuid, (k, list) -> {
+            // indexPlayer/unindexPlayer for this player wait for this, so the queues can't get ahead of the index here
+            List<QueuePlayer> current = new ArrayList<>();
+            for(QueueServer server : servers) {
+                for(QueuePlayer queuePlayer : server.getQueue()) {
+                    if(queuePlayer.getUniqueId().equals(uuid)) current.add(queuePlayer);
+                }
+            }
+            Set<QueuePlayer> indexed = list == null ? Collections.emptySet() : new HashSet<>(list);
+            if(indexed.equals(new HashSet<>(current))) return list; // it changed while we were checking, and is correct now
+            repaired[0] = true;
+            main.getLogger().warn("[index] Player index mismatch for " + uuid + ": expected " + current.size() + " queue(s), index has " + indexed.size());
+            return current.isEmpty() ? null : ImmutableList.copyOf(current);
+        });
+        return repaired[0];
     }
 
     @Override
@@ -384,15 +543,15 @@ public class QueueManagerImpl implements QueueManager {
                 if(!server.isJoinable(player)) {
                     player.sendActionBar(msgs.getComponent("spigot.actionbar.offline",
                             "POS:"+pos,
-                            "LEN:"+server.getQueue().size(),
+                            "LEN:"+server.getQueueSize(),
                             "SERVER:"+server.getAlias(),
                             "STATUS:"+status
                     ));
                 } else {
-                    int time = (int) Math.round(pos * main.getTimeBetweenPlayers());
+                    int time = (int) Math.round(pos * server.getSendInterval());
                     player.sendActionBar(msgs.getComponent("spigot.actionbar.online",
                             "POS:"+pos,
-                            "LEN:"+server.getQueue().size(),
+                            "LEN:"+server.getQueueSize(),
                             "SERVER:"+server.getAlias(),
                             "TIME:"+ TimeUtils.timeString(time, msgs.getString("format.time.mins"), msgs.getString("format.time.secs"))
                     ));
@@ -423,18 +582,18 @@ public class QueueManagerImpl implements QueueManager {
 
                 String status = Messages.color(main.getMessages().getRawString("placeholders.status."+server.getStatus(player)));
 
-                int time = (int) Math.round(pos * main.getTimeBetweenPlayers());
+                int time = (int) Math.round(pos * server.getSendInterval());
 
                 Component titleMessage = msgs.getComponent("title.title",
                         "POS:"+pos,
-                        "LEN:"+server.getQueue().size(),
+                        "LEN:"+server.getQueueSize(),
                         "SERVER:"+server.getAlias(),
                         "STATUS:"+status,
                         "TIME:"+ TimeUtils.timeString(time, msgs.getString("format.time.mins"), msgs.getString("format.time.secs"))
                 );
                 Component subTitleMessage = msgs.getComponent("title.subtitle",
                         "POS:"+pos,
-                        "LEN:"+server.getQueue().size(),
+                        "LEN:"+server.getQueueSize(),
                         "SERVER:"+server.getAlias(),
                         "STATUS:"+status,
                         "TIME:"+ TimeUtils.timeString(time, msgs.getString("format.time.mins"), msgs.getString("format.time.secs"))
@@ -446,47 +605,11 @@ public class QueueManagerImpl implements QueueManager {
         }
     }
 
-    protected final Map<AdaptedPlayer, Long> pausedAntiSpam = new ConcurrentHashMap<>();
     private boolean skipPriorityCheck = true;
 
     @Override
     public void sendQueueEvents() {
-        if(main.getConfig().getBoolean("force-queue-server-target")) {
-            List<String> svs = main.getConfig().getStringList("queue-servers");
-            for(String s : svs) {
-                if(!s.contains(":")) continue;
-                String[] parts = s.split(":");
-                String fromName = parts[0];
-                String toName = parts[1];
-                AdaptedServer from = main.getPlatformMethods().getServer(fromName);
-                QueueServer to = findServer(toName);
-                if(from == null || to == null) continue;
-                from.getPlayers().forEach(player -> {
-                    if(PauseQueueServer.pausedPlayers.contains(player)) {
-                        long lastReminder = pausedAntiSpam.getOrDefault(player, 0L);
-                        if(System.currentTimeMillis() - lastReminder > 60e3) { // 60 second cooldown on the reminder messages
-                            player.sendMessage(main.getMessages().getComponent("commands.pausequeueserver.reminder"));
-                            pausedAntiSpam.put(player, System.currentTimeMillis());
-                        }
-                        return;
-                    }
-                    long lastSwitch = main.getServerTimeManager().getLastServerChange(player);
-                    int delay = Math.min(Math.max(main.getConfig().getInt("queue-server-delay"), 0), 3000);
-                    if(System.currentTimeMillis() - lastSwitch < delay + 1000 || !player.getCurrentServer().equals(from)) {
-                        return;
-                    }
-                    if(
-                            !getPlayerQueues(player).contains(to) &&
-                                    (
-                                            !main.getConfig().getBoolean("require-queueserver-permission") ||
-                                                    player.hasPermission("ajqueue.queueserver." + to.getName())
-                                    )
-                    ) {
-                        addToQueue(player, to);
-                    }
-                });
-            }
-        }
+        // force-queue-server-target is handled by QueueServerWatcher
         for (QueueServer s : servers) {
             for (QueuePlayer queuePlayer : s.getQueue()) {
                 AdaptedPlayer player = queuePlayer.getPlayer();
@@ -495,6 +618,9 @@ public class QueueManagerImpl implements QueueManager {
                 main.getPlatformMethods().sendPluginMessage(player, "inqueueevent", "true");
             }
         }
+        if(main.getConfig().getBoolean("debug")) {
+            checkPlayerIndex();
+        }
         if(main.getConfig().getBoolean("re-check-priority")) {
             if(skipPriorityCheck) {
                 skipPriorityCheck = false;
@@ -539,7 +665,7 @@ public class QueueManagerImpl implements QueueManager {
         QueueServer server = queuePlayer.getQueueServer();
 
         int pos = queuePlayer.getPosition();
-        int len = server.getQueue().size();
+        int len = server.getQueueSize();
 
         if(!server.isJoinable(player)) {
             String status = server.getStatusString(player);
@@ -554,7 +680,7 @@ public class QueueManagerImpl implements QueueManager {
                     ));
         } else {
             if(msgs.getString("status.online.base").isEmpty()) return;
-            int time = (int) Math.round(pos * main.getTimeBetweenPlayers());
+            int time = (int) Math.round(pos * server.getSendInterval());
             player.sendMessage(msgs.getComponent("status.online.base",
                     "TIME:" + TimeUtils.timeString(time, msgs.getString("format.time.mins"), msgs.getString("format.time.secs")),
                     "POS:"+pos,
@@ -566,14 +692,22 @@ public class QueueManagerImpl implements QueueManager {
 
     @Override
     public void updateServers() {
-        ExecutorService pool = main.getTaskManager().getServersUpdateExecutor();
-        if (pool instanceof ThreadPoolExecutor && main.getConfig().getBoolean("pinger-debug")) {
-            main.getLogger().info("[pinger] Server update thread pool has "
-                    +((ThreadPoolExecutor) pool).getActiveCount()+" threads");
+        ServerPinger pinger = main.getServerPinger();
+        if (main.getConfig().getBoolean("pinger-debug")) {
+            main.getLogger().info("[pinger] "+pinger.getInFlight()+" pings in progress ("
+                    +pinger.getActive()+" sending, "+pinger.getQueued()+" waiting for a thread). "
+                    +pinger.getSent()+" sent, "+pinger.getCoalesced()+" skipped, "+pinger.getTimedOut()+" timed out");
+        }
+        if(PingScheduler.isEnabled(main)) {
+            main.getPingScheduler().update();
+            return;
         }
+        main.getPingScheduler().clear();
         try {
             for(AdaptedServer server : main.getPlatformMethods().getServers()) {
-                pool.submit(() -> server.ping(main.getConfig().getBoolean("pinger-debug"), main.getLogger()));
+                if(pinger.isPinging(server)) continue;
+                pinger.ping(server)
+                        .whenComplete((ping, e) -> main.getSendScheduler().onPing(server, e == null ? ping : null));
             }
         } catch(Exception e) {
             e.printStackTrace();
@@ -601,251 +735,425 @@ public class QueueManagerImpl implements QueueManager {
     }
 
 
-    final ConcurrentHashMap<AdaptedPlayer, Long> sendingNowAntiSpam = new ConcurrentHashMap<>();
-    final Map<QueuePlayer, Integer> sendingAttempts = new WeakHashMap<>();
-    final Map<QueuePlayer, Long> makeRoomAntispam = new WeakHashMap<>();
+    private final ConnectionTracker connectionTracker;
+    public ConnectionTracker getConnectionTracker() {
+        return connectionTracker;
+    }
+
+    final ExpiringMap<AdaptedPlayer> sendingNowAntiSpam;
+    private final SendAttemptTracker sendAttempts;
+    private final QueueServerWatcher queueServerWatcher;
+    public QueueServerWatcher getQueueServerWatcher() {
+        return queueServerWatcher;
+    }
+    public SendAttemptTracker getSendAttemptTracker() {
+        return sendAttempts;
+    }
+    final ExpiringMap<QueuePlayer> makeRoomAntispam;
+    // players that are offline -> the timer that checks if they have been offline for too long
+    private final Map<UUID, TimingWheel.Timeout> offlineTimers = new ConcurrentHashMap<>();
+    // queue name -> the drain sending players to it after it came back online
+    private final Map<String, RefillDrain> refillDrains = new ConcurrentHashMap<>();
+
+    /**
+     * Makes the queues for this server work out their cached player states again.
+     * Called when the server gets a ping or heartbeat, or a player is sent to it.
+     */
+    public void onServerStateChanged(AdaptedServer server) {
+        for(QueueServer queueServer : servers) {
+            if(!(queueServer instanceof QueueServerImpl)) continue;
+            if(!queueServer.getServerNames().contains(server.getName())) continue;
+            ((QueueServerImpl) queueServer).invalidateState();
+        }
+    }
 
     @Override
-    public synchronized void sendPlayers(QueueServer queueServer) {
-        List<QueueServer> sendingServers;
-        if(queueServer == null) {
-            sendingServers = new ArrayList<>(servers);
-        } else {
-            sendingServers = Collections.singletonList(queueServer);
+    public void sendPlayers(QueueServer queueServer) {
+        // send passes only read snapshots, and hand their changes to the queue state thread (if enabled) themselves
+        if(queueServer != null) {
+            sendQueueLocked(queueServer);
+            return;
         }
 
-        for(QueueServer server : sendingServers) {
-            for(QueuePlayer queuePlayer : server.getQueue()) {
-                if(queuePlayer.getPlayer() != null) continue;
-                if(main.getLogic().playerDisconnectedTooLong(queuePlayer)) {
-                    server.removePlayer(queuePlayer);
+        ExecutorService sendExecutor = main.getTaskManager().getSendExecutor();
+        if(sendExecutor == null) {
+            for(QueueServer server : servers) {
+                sendQueueLocked(server);
+            }
+            return;
+        }
+
+        // fan out one send pass per queue, and wait for all of them so that passes never overlap
+        List<Callable<Void>> passes = new ArrayList<>();
+        for(QueueServer server : servers) {
+            passes.add(() -> {
+                sendQueueLocked(server);
+                return null;
+            });
+        }
+        try {
+            for(Future<Void> pass : sendExecutor.invokeAll(passes)) {
+                try {
+                    pass.get();
+                } catch(ExecutionException e) {
+                    main.getLogger().warning("An error occurred while sending players:", e.getCause());
                 }
             }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            if(!server.isOnline()) continue;
-            if(server.getQueue().size() == 0) continue;
+    /**
+     * Runs a send pass for one queue while holding that queue's send lock,
+     * so that passes for other queues are not blocked by it
+     */
+    private void sendQueueLocked(QueueServer server) {
+        if(!(server instanceof QueueServerImpl)) {
+            synchronized(server) {
+                sendQueue(server);
+            }
+            return;
+        }
+        Lock sendLock = ((QueueServerImpl) server).getSendLock();
+        sendLock.lock();
+        try {
+            sendQueue(server);
+        } finally {
+            sendLock.unlock();
+        }
+    }
 
-            Debug.info("should send when back online: " + !server.isGroup() + " && " + main.getConfig().getBoolean("send-all-when-back-online") + " && " + server.getServers().get(0).justWentOnline());
-            if(!server.isGroup() && main.getConfig().getBoolean("send-all-when-back-online") && server.getServers().get(0).justWentOnline()) {
-                for(QueuePlayer p : server.getQueue()) {
+    private void sendQueue(QueueServer server) {
+        if(!server.isOnline()) return;
+        if(server.getQueueSize() == 0) return;
 
-                    AdaptedPlayer player = p.getPlayer();
-                    if(player == null) continue;
+        Debug.info("should send when back online: " + !server.isGroup() + " && " + main.getConfig().getBoolean("send-all-when-back-online") + " && " + server.getServers().get(0).justWentOnline());
+        if(!server.isGroup() && main.getConfig().getBoolean("send-all-when-back-online") && server.getServers().get(0).justWentOnline()) {
+            if(RefillDrain.isEnabled(main)) {
+                refillDrains.computeIfAbsent(server.getName(), name -> new RefillDrain(main, this, name)).start();
+                return;
+            }
+            for(QueuePlayer p : server.getQueue()) {
+                sendBackOnline(server, p);
+            }
+            return;
+        }
+        RefillDrain drain = refillDrains.get(server.getName());
+        if(drain != null && drain.isRunning()) return; // the drain is sending this queue
 
-                    AdaptedServer selected = server.getIdealServer(player);
+        if(SendRateController.isEnabled(main) && server.getLastSentTime() < server.getSendInterval() * 1000) return;
 
-                    if(selected == null) {
-                        main.getLogger().severe("Could not find ideal server for server '"+server.getName()+"'!");
-                        continue;
-                    }
+        int batchSize = getSendBatchSize(server);
+        Set<QueuePlayer> sent = new HashSet<>();
+        for(int i = 0; i < batchSize; i++) {
+            if(!sendNextPlayer(server, sent)) break;
+        }
+    }
 
-                    if(
-                            (selected.isFull() && !selected.canJoinFull(player)) ||
-                                    (server.isManuallyFull() && !AdaptedServer.canJoinFull(player, server.getName()))
-                    ) continue;
+    /**
+     * Sends a player to a queue's server that just came back online (send-all-when-back-online)
+     * @return the connection, or null if the player can't be sent right now
+     */
+    CompletableFuture<Boolean> sendBackOnline(QueueServer server, QueuePlayer queuePlayer) {
+        AdaptedPlayer player = queuePlayer.getPlayer();
+        if(player == null) return null;
+        if(connectionTracker.isConnecting(player.getUniqueId())) return null;
 
-                    player.sendMessage(msgs.getComponent("status.sending-now", "SERVER:"+server.getAlias()));
-                    Debug.info("Calling player.connect for " + player.getName() + "(send when back online)");
-                    player.connect(selected);
-                }
-                continue;
-            }
+        AdaptedServer selected = server.getIdealServer(player);
 
-            QueuePlayer nextQueuePlayer = server.getQueue().get(0);
-            AdaptedPlayer nextPlayer = nextQueuePlayer.getPlayer();
+        if(selected == null) {
+            main.getLogger().severe("Could not find ideal server for server '"+server.getName()+"'!");
+            return null;
+        }
 
+        if(
+                (selected.isFull() && !selected.canJoinFull(player)) ||
+                        (server.isManuallyFull() && !AdaptedServer.canJoinFull(player, server.getName()))
+        ) return null;
+        if(!connectionTracker.canConnect(selected)) return null;
+
+        player.sendMessage(msgs.getComponent("status.sending-now", "SERVER:"+server.getAlias()));
+        Debug.info("Calling player.connect for " + player.getName() + "(send when back online)");
+        CompletableFuture<Boolean> connection = connectionTracker.connect(player, selected);
+        selected.addPlayer();
+        onServerStateChanged(selected);
+        return connection;
+    }
 
-            // If the first person int the queue is offline or already in the server, find the next online player in the queue
-            int i = 0;
-            List<String> excludableServers = new ArrayList<>(server.getServerNames());
-            if(nextQueuePlayer.getInitialServer() != null) excludableServers.remove(nextQueuePlayer.getInitialServer().getName());
-            while((nextPlayer == null || excludableServers.contains(nextPlayer.getServerName())) && i < server.getQueue().size()) {
-                if(nextPlayer != null) { // Remove them if they are already in the server
-                    server.removePlayer(nextQueuePlayer);
-                    if(server.getQueue().size() > i) {
-                        nextQueuePlayer = server.getQueue().get(i);
-                        nextPlayer = nextQueuePlayer.getPlayer();
-                    } else {
-                        nextPlayer = null;
-                        break;
-                    }
-                } else {
-                    i++;
-                    if(i > server.getQueue().size()-1) {
-                        break;
-                    }
-                    nextQueuePlayer = server.getQueue().get(i);
-                    nextPlayer = nextQueuePlayer.getPlayer();
-                }
+    /**
+     * Sends the first player in the queue that can be sent and was not already sent in this pass
+     * @param sent The players that were already sent in this pass. The sent player is added to it.
+     * @return true if a player was sent
+     */
+    private boolean sendNextPlayer(QueueServer server, Set<QueuePlayer> sent) {
+        if(server.getQueueSize() == 0) return false;
+
+        // The offline players at the front of the queue were already skipped in an earlier pass, so start after them
+        QueueHolder holder = server.getQueueHolder();
+        HeadCursor cursor = server instanceof QueueServerImpl ? ((QueueServerImpl) server).getHeadCursor() : null;
+        long epoch = cursor == null ? 0 : cursor.getEpoch();
+        long modCount = holder.getModCount();
+        ImmutableList<QueuePlayer> queue = server.getQueue();
+        int i = cursor == null || holder.getModCount() != modCount ? 0 : cursor.getStart(epoch, modCount);
+        int offlineHead = -1;
+
+        // If the person in the queue is offline, already in the server or already being sent, find the next online player in the queue
+        QueuePlayer nextQueuePlayer = null;
+        AdaptedPlayer nextPlayer = null;
+        List<String> serverNames = server.getServerNames();
+        while(i < queue.size()) {
+            QueuePlayer queuePlayer = queue.get(i);
+            AdaptedPlayer player = queuePlayer.getPlayer();
+            if(player == null) {
+                i++;
+                continue;
             }
+            if(offlineHead == -1) offlineHead = i;
 
-            if(nextPlayer == null) continue; // None of the players in the queue are online
+            if(isAlreadySending(queuePlayer, sent)) {
+                i++;
+                continue;
+            }
+            if(!sendAttempts.canAttempt(queuePlayer)) {
+                // keep the queue in order unless players are allowed to pass someone who is waiting to be tried again
+                if(!main.getConfig().getBoolean("send-attempt-backoff-skip")) break;
+                i++;
+                continue;
+            }
 
-            AdaptedServer selected = server.getIdealServer(nextPlayer);
-            if(selected == null) {
-                main.getLogger().severe("Could not find ideal server for server/group '"+server.getName()+"'");
+            AdaptedServer initialServer = queuePlayer.getInitialServer();
+            String playerServer = player.getServerName();
+            if(serverNames.contains(playerServer) && (initialServer == null || !initialServer.getName().equals(playerServer))) {
+                // Remove them if they are already in the server. The next player moves into this index.
+                server.removePlayer(queuePlayer);
+                queue = server.getQueue();
+                if(i < queue.size() && queue.get(i) == queuePlayer) i++; // someone else already changed the queue
                 continue;
             }
 
-            if(selected.isWhitelisted() && !selected.getWhitelistedPlayers().contains(nextPlayer.getUniqueId())) continue;
+            nextQueuePlayer = queuePlayer;
+            nextPlayer = player;
+            break;
+        }
+        if(cursor != null) cursor.advance(epoch, modCount, offlineHead == -1 ? i : offlineHead);
 
-            if(!server.canAccess(nextPlayer)) continue;
+        if(nextPlayer == null) return false; // None of the players in the queue are online, or they are all already on their way
 
-            if(
-                    (
-                            (selected.isFull() && !selected.canJoinFull(nextPlayer)) ||
-                            (server.isManuallyFull() && !AdaptedServer.canJoinFull(nextPlayer, server.getName()))
-                    ) &&
-                            !(
-                                    nextPlayer.hasPermission("ajqueue.make-room") &&
-                                            main.getConfig().getBoolean("enable-make-room-permission") &&
-                                            (!server.isGroup() || server.isManuallyFull()) // only use make-room on groups if the server is manually full
-                            )
-            ) continue;
-
-
-            // ajqueue.make-room logic
-            if(
-                    (
-                            (selected.isFull() && !selected.canJoinFull(nextPlayer)) ||
-                                    (server.isManuallyFull() && !AdaptedServer.canJoinFull(nextPlayer, server.getName()))
-                    ) &&
-                            main.getConfig().getBoolean("enable-make-room-permission") &&
-                            nextPlayer.hasPermission("ajqueue.make-room") &&
-                            (!server.isGroup() || server.isManuallyFull()) && // only use make-room on groups if the server is manually full
-                            ( // don't make room more than the minimum ping time
-                                    System.currentTimeMillis() - makeRoomAntispam.getOrDefault(nextQueuePlayer, 0L)
-                                            >= (main.getConfig().getDouble("minimum-ping-time") * 1e3)
-                            )
-            ) {
-                makeRoomAntispam.put(nextQueuePlayer, System.currentTimeMillis());
-                List<AdaptedPlayer> players = selected.getPlayers();
-
-                // first, we need to find what the lowest priority on the server is
-                int lowestPriority = Integer.MAX_VALUE;
-                for (AdaptedPlayer player : players) {
-                    int priority = main.getLogic().getHighestPriority(server, selected, player);
-                    if(priority < lowestPriority) lowestPriority = priority;
-                }
+        AdaptedServer selected = server.getIdealServer(nextPlayer);
+        if(selected == null) {
+            main.getLogger().severe("Could not find ideal server for server/group '"+server.getName()+"'");
+            return false;
+        }
+        if(!connectionTracker.canConnect(selected)) return false;
 
-                boolean kickLongest = main.getConfig().getBoolean("make-room-kick-longest-playtime");
-
-                long selectedTime = kickLongest ? Long.MAX_VALUE : 0;
-                AdaptedPlayer selectedPlayer = null;
-                for (AdaptedPlayer player : players) {
-                    int priority = main.getLogic().getHighestPriority(server, selected, player);
-                    if(priority > lowestPriority) continue; // don't select players with higher priorities
-                    long switchTime = main.getServerTimeManager().getLastServerChange(player);
-                    if(selectedPlayer == null) {
-                        selectedPlayer = player;
-                        selectedTime = switchTime;
-                        continue;
-                    }
-                    if(kickLongest) {
-                        if(switchTime < selectedTime) {
-                            selectedTime = switchTime;
-                            selectedPlayer = player;
-                        }
-                    } else {
-                        if(switchTime > selectedTime) {
-                            selectedTime = switchTime;
-                            selectedPlayer = player;
-                        }
-                    }
-                }
+        if(selected.isWhitelisted()) {
+            // the whitelist changed since the last ping, so wait for the new one instead of going by the old one
+            if(!selected.isWhitelistKnown()) return false;
+            if(!selected.isPlayerWhitelisted(nextPlayer.getUniqueId())) return false;
+        }
+
+        if(!server.canAccess(nextPlayer)) return false;
+
+        if(
+                (
+                        (selected.isFull() && !selected.canJoinFull(nextPlayer)) ||
+                        (server.isManuallyFull() && !AdaptedServer.canJoinFull(nextPlayer, server.getName()))
+                ) &&
+                        !(
+                                nextPlayer.hasPermission("ajqueue.make-room") &&
+                                        main.getConfig().getBoolean("enable-make-room-permission") &&
+                                        (!server.isGroup() || server.isManuallyFull()) // only use make-room on groups if the server is manually full
+                        )
+        ) return false;
+
+
+        // ajqueue.make-room logic
+        if(
+                (
+                        (selected.isFull() && !selected.canJoinFull(nextPlayer)) ||
+                                (server.isManuallyFull() && !AdaptedServer.canJoinFull(nextPlayer, server.getName()))
+                ) &&
+                        main.getConfig().getBoolean("enable-make-room-permission") &&
+                        nextPlayer.hasPermission("ajqueue.make-room") &&
+                        (!server.isGroup() || server.isManuallyFull()) && // only use make-room on groups if the server is manually full
+                        ( // don't make room more than the minimum ping time
+                                System.currentTimeMillis() - makeRoomAntispam.getOrDefault(nextQueuePlayer, 0L)
+                                        >= (main.getConfig().getDouble("minimum-ping-time") * 1e3)
+                        )
+        ) {
+            makeRoomAntispam.put(
+                    nextQueuePlayer,
+                    System.currentTimeMillis(),
+                    (long) (main.getConfig().getDouble("minimum-ping-time") * 1e3)
+            );
+
+            // pick from the players with the lowest priority on the server
+            boolean kickLongest = main.getConfig().getBoolean("make-room-kick-longest-playtime");
+            AdaptedPlayer selectedPlayer = main.getMakeRoomIndex().selectPlayer(server, selected, kickLongest);
 
 
-                if(selectedPlayer == null) {
+            if(selectedPlayer == null) {
+                main.getLogger().warn(
+                        "Unable to find player to kick from " + selected.getName() + " " +
+                                "to let " + nextPlayer.getName() + "join!"
+                );
+            } else {
+                Debug.info(
+                        "Selected " + selectedPlayer.getName() + " " +
+                                "to make room for " + nextPlayer.getName() + " in " + selected.getName()
+                );
+                String kickToName = main.getConfig().getString("make-room-kick-to");
+                AdaptedServer kickTo = main.getPlatformMethods().getServer(kickToName);
+                if(kickTo == null) {
                     main.getLogger().warn(
-                            "Unable to find player to kick from " + selected.getName() + " " +
-                                    "to let " + nextPlayer.getName() + "join!"
+                            "Unable to make room due to '" + kickToName + "' not existing! " +
+                                    "Please configure make-room-kick-to in the config"
                     );
-                } else {
-                    Debug.info(
-                            "Selected " + selectedPlayer.getName() + " " +
-                                    "to make room for " + nextPlayer.getName() + " in " + selected.getName()
+                    boolean isAdmin = nextPlayer.hasPermission("ajqueue.manage");
+                    nextPlayer.sendMessage(
+                            main.getMessages().getComponent(
+                                    isAdmin ? "errors.make-room-failed.admin" : "errors.make-room-failed.player"
+                            )
                     );
-                    String kickToName = main.getConfig().getString("make-room-kick-to");
-                    AdaptedServer kickTo = main.getPlatformMethods().getServer(kickToName);
-                    if(kickTo == null) {
-                        main.getLogger().warn(
-                                "Unable to make room due to '" + kickToName + "' not existing! " +
-                                        "Please configure make-room-kick-to in the config"
-                        );
-                        boolean isAdmin = nextPlayer.hasPermission("ajqueue.manage");
-                        nextPlayer.sendMessage(
-                                main.getMessages().getComponent(
-                                        isAdmin ? "errors.make-room-failed.admin" : "errors.make-room-failed.player"
-                                )
-                        );
-                    } else {
-                        selectedPlayer.connect(kickTo);
-                        selectedPlayer.sendMessage(main.getMessages().getComponent("errors.kicked-to-make-room"));
-
-                        if(main.getTimeBetweenPlayers() >= 1d) {
-                            nextPlayer.sendMessage(main.getMessages().getComponent("status.making-room"));
-                        }
-
-                        continue;
+                } else {
+                    selectedPlayer.connect(kickTo);
+                    selectedPlayer.sendMessage(main.getMessages().getComponent("errors.kicked-to-make-room"));
+
+                    if(main.getTimeBetweenPlayers() >= 1d) {
+                        nextPlayer.sendMessage(main.getMessages().getComponent("status.making-room"));
                     }
+
+                    return false;
                 }
             }
+        }
 
-            if(main.getConfig().getBoolean("enable-bypasspaused-permission")) {
-                if(server.isPaused() && !nextPlayer.hasPermission("ajqueue.bypasspaused")) continue;
-            } else if(server.isPaused()) { continue; }
+        if(main.getConfig().getBoolean("enable-bypasspaused-permission")) {
+            if(server.isPaused() && !nextPlayer.hasPermission("ajqueue.bypasspaused")) return false;
+        } else if(server.isPaused()) { return false; }
 
-            int tries = sendingAttempts.getOrDefault(nextQueuePlayer, 0);
-            int maxTries = main.getConfig().getInt("max-tries");
-            if(tries >= maxTries && maxTries > 0) {
-                server.removePlayer(nextQueuePlayer);
-                sendingAttempts.remove(nextQueuePlayer);
-                nextPlayer.sendMessage(msgs.getComponent("max-tries-reached", "SERVER:"+server.getAlias()));
-                continue;
-            }
-            tries++;
-            sendingAttempts.put(nextQueuePlayer, tries);
+        int tries = sendAttempts.getAttempts(nextQueuePlayer);
+        int maxTries = main.getConfig().getInt("max-tries");
+        if(tries >= maxTries && maxTries > 0) {
+            server.removePlayer(nextQueuePlayer);
+            sendAttempts.remove(nextQueuePlayer);
+            nextPlayer.sendMessage(msgs.getComponent("max-tries-reached", "SERVER:"+server.getAlias()));
+            return false;
+        }
+        connect(server, nextQueuePlayer, nextPlayer, selected);
+        sent.add(nextQueuePlayer);
+        return true;
+    }
 
-            if(!sendingNowAntiSpam.containsKey(nextPlayer)) {
-                sendingNowAntiSpam.put(nextPlayer, (long) 0);
-            }
-            if(System.currentTimeMillis() - sendingNowAntiSpam.get(nextPlayer) >= 5000) {
-                nextPlayer.sendMessage(msgs.getComponent("status.sending-now", "SERVER:"+server.getAlias()));
-                if(main.getConfig().getBoolean("send-title")) {
-                    nextPlayer.showTitle(Title.title(
-                            main.getMessages().getComponent(
-                                    "title.sending-now.title",
-                                    "SERVER:"+server.getAlias()
-                            ),
-                            main.getMessages().getComponent(
-                                    "title.sending-now.subtitle",
-                                    "SERVER:"+server.getAlias()
-                            ),
-                            Title.Times.times(Duration.ZERO, Duration.ofSeconds(2L), Duration.ZERO)
-                    ));
-                }
-                sendingNowAntiSpam.put(nextPlayer, System.currentTimeMillis());
+    /**
+     * Sends a player that was just added to a queue, without a full send pass.
+     * addToQueue already checked that the queue is joinable for them (the ideal server is online, not full,
+     * they are whitelisted and the queue isn't paused), so this only checks what a send pass would check on top of that.
+     * @return true if the player was sent. If false, a normal send pass should be run instead.
+     */
+    private boolean sendInstantly(QueueServer server, QueuePlayer queuePlayer, AdaptedServer ideal) {
+        if(!(server instanceof QueueServerImpl)) return false;
+        Lock sendLock = ((QueueServerImpl) server).getSendLock();
+        sendLock.lock();
+        try {
+            AdaptedPlayer player = queuePlayer.getPlayer();
+            if(ideal == null || player == null) return false;
+            if(queuePlayer.getPosition() != 1) return false; // someone is in front of them
+            if(connectionTracker.isConnecting(player.getUniqueId())) return true;
+            if(!connectionTracker.canConnect(ideal)) return false;
+            if(SendRateController.isEnabled(main) && server.getLastSentTime() < server.getSendInterval() * 1000) return false;
+
+            Debug.info("Sending " + player.getName() + " instantly");
+            connect(server, queuePlayer, player, ideal);
+            return true;
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    private void connect(QueueServer server, QueuePlayer queuePlayer, AdaptedPlayer player, AdaptedServer selected) {
+        sendAttempts.recordAttempt(queuePlayer);
+
+        if(System.currentTimeMillis() - sendingNowAntiSpam.getOrDefault(player, 0L) >= 5000) {
+            player.sendMessage(msgs.getComponent("status.sending-now", "SERVER:"+server.getAlias()));
+            if(main.getConfig().getBoolean("send-title")) {
+                player.showTitle(Title.title(
+                        main.getMessages().getComponent(
+                                "title.sending-now.title",
+                                "SERVER:"+server.getAlias()
+                        ),
+                        main.getMessages().getComponent(
+                                "title.sending-now.subtitle",
+                                "SERVER:"+server.getAlias()
+                        ),
+                        Title.Times.times(Duration.ZERO, Duration.ofSeconds(2L), Duration.ZERO)
+                ));
             }
+            sendingNowAntiSpam.put(player, System.currentTimeMillis(), 5000L);
+        }
 
 
-            server.setLastSentTime(System.currentTimeMillis());
-            Debug.info("calling nextPlayer.connect on " + nextPlayer.getName());
-            nextPlayer.connect(selected);
-            selected.addPlayer();
-            Debug.info(selected.getName()+" player count is now set to "+ selected.getPlayerCount());
+        server.setLastSentTime(System.currentTimeMillis());
+        Debug.info("calling player.connect on " + player.getName());
+        connectionTracker.connect(player, selected);
+        selected.addPlayer();
+        onServerStateChanged(selected);
+        Debug.info(selected.getName()+" player count is now set to "+ selected.getPlayerCount());
+    }
+
+    private boolean isAlreadySending(QueuePlayer queuePlayer, Set<QueuePlayer> sent) {
+        return sent.contains(queuePlayer) || connectionTracker.isConnecting(queuePlayer.getUniqueId());
+    }
+
+    /**
+     * Gets how many players can be sent from this queue in one pass.
+     * This is send-batch-size, limited to the free slots from the last ping.
+     * Always at least 1, so that players who can join full servers can still be sent.
+     */
+    private int getSendBatchSize(QueueServer server) {
+        String configured = main.getConfig().getString("send-batch-size");
+        int cap;
+        if(configured == null || configured.equalsIgnoreCase("auto")) {
+            cap = Integer.MAX_VALUE;
+        } else {
+            try {
+                cap = Integer.parseInt(configured.trim());
+            } catch(NumberFormatException e) {
+                cap = 1;
+            }
+        }
+        if(cap <= 1) return 1;
+
+        int free = 0;
+        int online = 0;
+        for(AdaptedServer adaptedServer : server.getServers()) {
+            if(!adaptedServer.getLastPing().isPresent()) continue;
+            int playerCount = getExpectedPlayerCount(adaptedServer);
+            free += Math.max(0, adaptedServer.getMaxPlayers() - playerCount);
+            online += playerCount;
         }
+        free = Math.min(free, Math.max(0, server.getManualMaxPlayers() - online));
+
+        return Math.max(1, Math.min(free, cap));
+    }
+
+    /**
+     * Gets how many players a server will have once everyone that is connecting to it gets there
+     */
+    int getExpectedPlayerCount(AdaptedServer server) {
+        if(!server.getLastPing().isPresent()) return server.getPlayerCount();
+        // players still connecting from before the last ping aren't in its count, and weren't added to it after
+        return server.getPlayerCount() + connectionTracker.getInFlightStartedBefore(
+                server.getName(),
+                server.getLastPing().get().getFetchedTime()
+        );
     }
 
     @Override
     public ImmutableList<QueuePlayer> findPlayerInQueues(AdaptedPlayer p) {
-        List<QueuePlayer> srs = new ArrayList<>();
-        for(QueueServer s : servers) {
-            QueuePlayer player = s.findPlayer(p);
-            if(player != null) {
-                srs.add(player);
-            }
-        }
-        return ImmutableList.copyOf(srs);
+        ImmutableList<QueuePlayer> queued = playerIndex.get(p.getUniqueId());
+        return queued == null ? ImmutableList.of() : queued;
     }
 
     @Override
@@ -862,26 +1170,22 @@ public class QueueManagerImpl implements QueueManager {
 
     @Override
     public ImmutableList<QueueServer> getPlayerQueues(AdaptedPlayer p) {
-        List<QueueServer> srs = new ArrayList<>();
-        for(QueueServer s : servers) {
-            QueuePlayer player = s.findPlayer(p);
-            if(player != null) {
-                srs.add(s);
-            }
+        ImmutableList<QueuePlayer> queued = findPlayerInQueues(p);
+        if(queued.isEmpty()) return ImmutableList.of();
+        ImmutableList.Builder<QueueServer> builder = ImmutableList.builderWithExpectedSize(queued.size());
+        for(QueuePlayer queuePlayer : queued) {
+            builder.add(queuePlayer.getQueueServer());
         }
-        return ImmutableList.copyOf(srs);
+        return builder.build();
     }
 
     @Override
     public void clear(AdaptedPlayer player) {
-        for (AdaptedPlayer next : sendingNowAntiSpam.keySet()) {
-            if(!next.equals(player)) continue;
-            sendingNowAntiSpam.remove(next);
-        }
+        sendingNowAntiSpam.remove(player);
     }
 
     @Override
     public Map<QueuePlayer, Integer> getSendingAttempts() {
-        return sendingAttempts;
+        return sendAttempts.getCounts();
     }
 }
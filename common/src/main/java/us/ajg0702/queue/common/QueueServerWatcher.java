@@ -0,0 +1,168 @@
+package us.ajg0702.queue.common;
+
+import us.ajg0702.queue.api.players.AdaptedPlayer;
+import us.ajg0702.queue.api.players.QueuePlayer;
+import us.ajg0702.queue.api.queues.QueueServer;
+import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.commands.commands.manage.PauseQueueServer;
+import us.ajg0702.queue.common.utils.Debug;
+import us.ajg0702.queue.common.utils.ExpiringMap;
+import us.ajg0702.queue.common.utils.TimingWheel;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps players that are in a queue-server queued for its target (force-queue-server-target).
+ * <p>
+ * Instead of looking at every player in every queue-server every few seconds, this only keeps track of the players
+ * that are in a queue-server but not queued for its target, and sets a timer for each of them.
+ * Players are added when they join a queue-server or leave the target queue while still in one,
+ * and are retried every few seconds until they are queued or leave the queue-server.
+ */
+public class QueueServerWatcher {
+
+    private static final long RETRY_INTERVAL = 1500;
+
+    private final QueueMain main;
+    private final QueueManagerImpl manager;
+
+    private final ExpiringMap<AdaptedPlayer> pausedAntiSpam;
+
+    // queue-server name (lowercase) -> names of the queues that players in it should be queued for
+    private volatile Map<String, List<String>> targets = Collections.emptyMap();
+    // player -> (target queue name -> timer)
+    private final Map<UUID, Map<String, TimingWheel.Timeout>> pending = new ConcurrentHashMap<>();
+
+    public QueueServerWatcher(QueueMain main, QueueManagerImpl manager) {
+        this.main = main;
+        this.manager = manager;
+        this.pausedAntiSpam = new ExpiringMap<>(main.getTaskManager().getTimingWheel());
+    }
+
+    public boolean isEnabled() {
+        return main.getConfig().getBoolean("force-queue-server-target");
+    }
+
+    /**
+     * Re-reads queue-servers, and looks for players that are already in a queue-server.
+     * Called when the servers are reloaded.
+     */
+    public void reload() {
+        Map<String, List<String>> newTargets = new HashMap<>();
+        for(String s : main.getConfig().getStringList("queue-servers")) {
+            if(!s.contains(":")) continue;
+            String[] parts = s.split(":");
+            newTargets.computeIfAbsent(parts[0].toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(parts[1]);
+        }
+        targets = newTargets;
+
+        for(UUID uuid : new ArrayList<>(pending.keySet())) {
+            forget(uuid);
+        }
+        if(!isEnabled()) return;
+        for(String fromName : newTargets.keySet()) {
+            AdaptedServer from = main.getPlatformMethods().getServer(fromName);
+            if(from == null) continue;
+            for(AdaptedPlayer player : from.getPlayers()) {
+                watch(player, RETRY_INTERVAL);
+            }
+        }
+    }
+
+    public void onPlayerJoinServer(AdaptedPlayer player) {
+        forget(player.getUniqueId());
+        int delay = Math.min(Math.max(main.getConfig().getInt("queue-server-delay"), 0), 3000);
+        // give the normal queue-server handling time to queue them first
+        watch(player, delay + 1000L);
+    }
+
+    public void onPlayerLeave(AdaptedPlayer player) {
+        forget(player.getUniqueId());
+    }
+
+    /**
+     * Called when a player is removed from a queue, in case they are still in a queue-server for it
+     */
+    public void onQueueLeave(QueuePlayer queuePlayer) {
+        if(!isEnabled()) return;
+        AdaptedPlayer player = queuePlayer.getPlayer();
+        if(player == null || player.getServerName() == null) return;
+        List<String> queues = targets.get(player.getServerName().toLowerCase(Locale.ROOT));
+        String name = queuePlayer.getQueueServer().getName();
+        if(queues == null || !queues.contains(name)) return;
+        schedule(player.getUniqueId(), name, RETRY_INTERVAL);
+    }
+
+    /**
+     * Gets the number of players that are in a queue-server but not queued for its target yet
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void watch(AdaptedPlayer player, long delay) {
+        if(!isEnabled() || player.getServerName() == null) return;
+        List<String> queues = targets.get(player.getServerName().toLowerCase(Locale.ROOT));
+        if(queues == null) return;
+        for(String queue : queues) {
+            schedule(player.getUniqueId(), queue, delay);
+        }
+    }
+
+    private void schedule(UUID uuid, String queue, long delay) {
+        TimingWheel wheel = main.getTaskManager().getTimingWheel();
+        pending.computeIfAbsent(uuid, k -> new ConcurrentHashMap<>()).compute(queue, (k, previous) -> {
+            if(previous != null) previous.cancel();
+            return wheel.schedule(() -> check(uuid, queue), delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private void check(UUID uuid, String queue) {
+        pending.computeIfPresent(uuid, (k, timers) -> {
+            timers.remove(queue);
+            return timers.isEmpty() ? null : timers;
+        });
+        if(!isEnabled()) return;
+
+        AdaptedPlayer player = main.getPlatformMethods().getPlayer(uuid);
+        if(player == null || !player.isConnected() || player.getServerName() == null) return;
+        List<String> queues = targets.get(player.getServerName().toLowerCase(Locale.ROOT));
+        if(queues == null || !queues.contains(queue)) return; // they aren't in the queue-server anymore
+
+        QueueServer to = manager.findServer(queue);
+        if(to == null) return;
+        if(manager.getPlayerQueues(player).contains(to)) return;
+
+        if(PauseQueueServer.pausedPlayers.contains(player)) {
+            long lastReminder = pausedAntiSpam.getOrDefault(player, 0L);
+            if(System.currentTimeMillis() - lastReminder > 60e3) { // 60 second cooldown on the reminder messages
+                player.sendMessage(main.getMessages().getComponent("commands.pausequeueserver.reminder"));
+                pausedAntiSpam.put(player, System.currentTimeMillis(), 60_000L);
+            }
+            schedule(uuid, queue, RETRY_INTERVAL);
+            return;
+        }
+
+        if(
+                !main.getConfig().getBoolean("require-queueserver-permission") ||
+                        player.hasPermission("ajqueue.queueserver." + to.getName())
+        ) {
+            Debug.info("[queue-server] Queueing "+player.getName()+" for "+to.getName());
+            manager.addToQueue(player, to);
+        }
+        if(!manager.getPlayerQueues(player).contains(to)) {
+            // they couldn't be queued (yet), so try again later
+            schedule(uuid, queue, RETRY_INTERVAL);
+        }
+    }
+
+    private void forget(UUID uuid) {
+        Map<String, TimingWheel.Timeout> timers = pending.remove(uuid);
+        if(timers == null) return;
+        for(TimingWheel.Timeout timeout : timers.values()) {
+            timeout.cancel();
+        }
+    }
+}
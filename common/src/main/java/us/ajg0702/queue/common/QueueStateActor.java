@@ -0,0 +1,136 @@
+package us.ajg0702.queue.common;
+
+import us.ajg0702.queue.api.util.QueueLogger;
+import us.ajg0702.queue.common.utils.QueueThreadFactory;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Runs every change to the queues on a single thread.
+ * Other threads hand their changes to a lock-free queue that only this thread drains,
+ * and read the queues through their immutable snapshots.
+ * Only used if single-writer-queue-state is enabled.
+ */
+public class QueueStateActor {
+
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private final QueueLogger logger;
+    // held while a command runs, so commands run after shutdown never overlap with the ones the thread is still running
+    private final Object lock = new Object();
+
+    private volatile boolean running = true;
+
+    public QueueStateActor(QueueLogger logger) {
+        this.logger = logger;
+        thread = new QueueThreadFactory("QUEUE-STATE").newThread(this::drain);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isActorThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Queues a command to be run on the queue state thread, without waiting for it
+     */
+    public void execute(Runnable command) {
+        commands.add(command);
+        if(running) {
+            LockSupport.unpark(thread);
+        } else {
+            // the thread has stopped, so nothing else will run this
+            runPending();
+        }
+    }
+
+    /**
+     * Runs a command on the queue state thread and waits for it to finish.
+     * If this is called from the queue state thread, the command is run immediately.
+     */
+    public void run(Runnable command) {
+        call(() -> {
+            command.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a command on the queue state thread and waits for its result.
+     * If this is called from the queue state thread, the command is run immediately.
+     */
+    public <T> T call(Supplier<T> command) {
+        if(isActorThread()) return command.get();
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                future.complete(command.get());
+            } catch(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        try {
+            return future.join();
+        } catch(CompletionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    public int getPendingCommands() {
+        return commands.size();
+    }
+
+    /**
+     * Stops the queue state thread and waits for it to finish the commands it already has.
+     * Commands queued after this are run on the thread that queues them, one at a time.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+        if(isActorThread()) return;
+        try {
+            thread.join(5000);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        while(running) {
+            Runnable command = commands.poll();
+            if(command == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            runCommand(command);
+        }
+        runPending();
+    }
+
+    private void runPending() {
+        Runnable command;
+        while((command = commands.poll()) != null) {
+            runCommand(command);
+        }
+    }
+
+    private void runCommand(Runnable command) {
+        synchronized(lock) {
+            try {
+                command.run();
+            } catch(Exception e) {
+                logger.warning("An error occurred while changing queue state:", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package us.ajg0702.queue.common;
+
+import us.ajg0702.queue.api.players.QueuePlayer;
+import us.ajg0702.queue.api.queues.QueueServer;
+import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.common.utils.Debug;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the players in a queue in waves when its server comes back online (send-all-when-back-online),
+ * instead of connecting all of them at the same moment.
+ * <p>
+ * The first wave is send-all-when-back-online-wave-size players. The wave size doubles every time a whole wave
+ * makes it onto the server, and is halved (but never below the starting size) when any connection in a wave fails.
+ * A wave never sends more players than the server has free slots for, counting the players that are still connecting.
+ * The drain stops once a wave has nobody left to send and nobody is still connecting.
+ */
+public class RefillDrain {
+
+    private final QueueMain main;
+    private final QueueManagerImpl manager;
+    private final String name;
+
+    private volatile boolean running = false;
+
+    private int waveSize;
+    private int waveSent = 0;
+    private int waveSucceeded = 0;
+    private int waveFailed = 0;
+    private int connecting = 0;
+
+    public RefillDrain(QueueMain main, QueueManagerImpl manager, String name) {
+        this.main = main;
+        this.manager = manager;
+        this.name = name;
+    }
+
+    public static boolean isEnabled(QueueMain main) {
+        return main.getConfig().getInt("send-all-when-back-online-wave-size") > 0;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts sending waves, if this drain isn't already running
+     */
+    public synchronized void start() {
+        if(running) return;
+        running = true;
+        waveSize = getStartingWaveSize();
+        waveSent = 0;
+        waveSucceeded = 0;
+        waveFailed = 0;
+        Debug.info("[refill] Starting to refill "+name+" in waves of "+waveSize);
+        main.getTaskManager().runNow(this::wave);
+    }
+
+    private void wave() {
+        try {
+            if(!sendWave()) {
+                stop();
+                return;
+            }
+        } catch(Exception e) {
+            main.getLogger().warning("An error occurred while refilling "+name+":", e);
+            stop();
+            return;
+        }
+        long interval = (long) (Math.max(main.getConfig().getDouble("send-all-when-back-online-wave-interval"), 0.05) * 1000);
+        main.getTaskManager().runLater(this::wave, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return false if the drain is done
+     */
+    private boolean sendWave() {
+        QueueServer server = manager.findServer(name);
+        if(server == null || !server.isOnline() || server.getQueueSize() == 0) return false;
+        AdaptedServer target = main.getPlatformMethods().getServer(server.getServers().get(0).getName());
+        if(target == null) return false;
+
+        int budget;
+        synchronized(this) {
+            adjustWaveSize();
+            budget = waveSize;
+        }
+        if(target.getLastPing().isPresent()) {
+            int free = target.getMaxPlayers() - manager.getExpectedPlayerCount(target);
+            budget = Math.min(budget, Math.max(0, free));
+        }
+
+        int sent = 0;
+        if(budget > 0) {
+            for(QueuePlayer queuePlayer : server.getQueue()) {
+                if(sent >= budget) break;
+                CompletableFuture<Boolean> connection = manager.sendBackOnline(server, queuePlayer);
+                if(connection == null) continue;
+                sent++;
+                synchronized(this) {
+                    connecting++;
+                }
+                connection.whenComplete((success, e) -> finished(e == null && Boolean.TRUE.equals(success)));
+            }
+        }
+        Debug.info("[refill] Sent a wave of "+sent+" (budget "+budget+") to "+name);
+
+        synchronized(this) {
+            waveSent += sent;
+            // nobody was sent and nobody is still on their way, so the normal send task can take over
+            return sent > 0 || connecting > 0;
+        }
+    }
+
+    private void adjustWaveSize() {
+        if(waveSent == 0) return;
+        if(waveFailed > 0) {
+            waveSize = Math.max(getStartingWaveSize(), waveSize / 2);
+        } else if(waveSucceeded >= waveSent) {
+            waveSize = waveSize >= Integer.MAX_VALUE / 2 ? waveSize : waveSize * 2;
+        } else {
+            return; // the last wave is still connecting, so the next one is counted with it
+        }
+        waveSent = 0;
+        waveSucceeded = 0;
+        waveFailed = 0;
+    }
+
+    private synchronized void finished(boolean success) {
+        connecting--;
+        if(success) {
+            waveSucceeded++;
+        } else {
+            waveFailed++;
+        }
+    }
+
+    private synchronized void stop() {
+        running = false;
+        Debug.info("[refill] Done refilling "+name);
+    }
+
+    private int getStartingWaveSize() {
+        return Math.max(1, main.getConfig().getInt("send-all-when-back-online-wave-size"));
+    }
+}
@@ -0,0 +1,139 @@
+package us.ajg0702.queue.common;
+
+import com.google.common.collect.Maps;
+import us.ajg0702.queue.api.players.QueuePlayer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of how many times ajQueue has tried to send each queued player, and when.
+ * <p>
+ * After each attempt, the player isn't tried again until send-attempt-backoff seconds have passed,
+ * doubling with every attempt (up to send-attempt-backoff-max), so that a player who can't get in
+ * doesn't use up all of their max-tries in a few send passes.
+ * Entries are removed when the player leaves the queue.
+ */
+public class SendAttemptTracker {
+
+    private final QueueMain main;
+    private final Map<QueuePlayer, Attempts> attempts = new ConcurrentHashMap<>();
+    private final Map<QueuePlayer, Integer> counts = Collections.unmodifiableMap(Maps.transformValues(attempts, Attempts::getCount));
+
+    public SendAttemptTracker(QueueMain main) {
+        this.main = main;
+    }
+
+    /**
+     * Records that we are trying to send this player
+     * @return how many times we have tried to send them, including this time
+     */
+    public int recordAttempt(QueuePlayer player) {
+        long now = System.currentTimeMillis();
+        return attempts.compute(player, (p, previous) -> {
+            Attempts next = previous == null ? new Attempts(now) : previous;
+            next.count++;
+            next.lastAttempt = now;
+            return next;
+        }).count;
+    }
+
+    /**
+     * Records that the last attempt to send this player failed
+     * @param reason Why it failed (e.g. the kick message)
+     */
+    public void recordFailure(QueuePlayer player, String reason) {
+        Attempts playerAttempts = attempts.get(player);
+        if(playerAttempts == null) return;
+        playerAttempts.lastFailure = reason;
+    }
+
+    /**
+     * Checks if enough time has passed since the last attempt to send this player to try again
+     */
+    public boolean canAttempt(QueuePlayer player) {
+        Attempts playerAttempts = attempts.get(player);
+        if(playerAttempts == null) return true;
+        return System.currentTimeMillis() - playerAttempts.lastAttempt >= getBackoff(playerAttempts.count);
+    }
+
+    /**
+     * Gets how long to wait after a player's attempts before trying again
+     * @return the time in milliseconds
+     */
+    public long getBackoff(int attempts) {
+        double base = main.getConfig().getDouble("send-attempt-backoff");
+        if(base <= 0 || attempts <= 0) return 0;
+        double max = main.getConfig().getDouble("send-attempt-backoff-max");
+        double backoff = base * Math.pow(2, Math.min(attempts - 1, 30));
+        return (long) (Math.min(backoff, Math.max(max, base)) * 1000);
+    }
+
+    public boolean isBeingSent(QueuePlayer player) {
+        return attempts.containsKey(player);
+    }
+
+    public int getAttempts(QueuePlayer player) {
+        Attempts playerAttempts = attempts.get(player);
+        return playerAttempts == null ? 0 : playerAttempts.count;
+    }
+
+    public Attempts getDetails(QueuePlayer player) {
+        return attempts.get(player);
+    }
+
+    public void remove(QueuePlayer player) {
+        attempts.remove(player);
+    }
+
+    /**
+     * Removes every entry for players that aren't in one of these queues anymore.
+     * Used after the queues are rebuilt on a reload, since the players are re-created.
+     */
+    public void retainAll(Collection<QueuePlayer> players) {
+        Set<QueuePlayer> current = new HashSet<>(players);
+        attempts.keySet().removeIf(player -> !current.contains(player));
+    }
+
+    /**
+     * Gets a read-only view of how many times each player has been tried
+     */
+    public Map<QueuePlayer, Integer> getCounts() {
+        return counts;
+    }
+
+    public static class Attempts {
+        private volatile int count = 0;
+        private final long firstAttempt;
+        private volatile long lastAttempt;
+        private volatile String lastFailure;
+
+        private Attempts(long firstAttempt) {
+            this.firstAttempt = firstAttempt;
+            this.lastAttempt = firstAttempt;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getFirstAttempt() {
+            return firstAttempt;
+        }
+
+        public long getLastAttempt() {
+            return lastAttempt;
+        }
+
+        /**
+         * @return why the last attempt failed, or null if none of them have failed (yet)
+         */
+        public String getLastFailure() {
+            return lastFailure;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package us.ajg0702.queue.common;
+
+import us.ajg0702.queue.api.players.AdaptedPlayer;
+import us.ajg0702.queue.api.queues.QueueServer;
+import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.api.server.AdaptedServerPing;
+import us.ajg0702.queue.common.utils.Debug;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts send passes for a single queue when something happens that could let someone be sent,
+ * instead of waiting for the next run of the send task.
+ * Wakes still wait until the queue's send interval has passed since the last send.
+ * Only used if event-driven-sending is enabled.
+ */
+public class SendScheduler {
+
+    private final QueueMain main;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, String> lastServers = new ConcurrentHashMap<>();
+    private final Map<String, Integer> lastFreeSlots = new ConcurrentHashMap<>();
+
+    public SendScheduler(QueueMain main) {
+        this.main = main;
+    }
+
+    public boolean isEnabled() {
+        return main.getConfig() != null && main.getConfig().getBoolean("event-driven-sending");
+    }
+
+    /**
+     * Schedules a send pass for this queue, unless one is already scheduled
+     */
+    public void wake(QueueServer queueServer) {
+        if(!isEnabled() || queueServer.getQueueSize() == 0) return;
+        String name = queueServer.getName();
+        if(!pending.add(name)) return;
+
+        long delay = Math.max(0, (long) (queueServer.getSendInterval() * 1000) - queueServer.getLastSentTime());
+        main.getTaskManager().runLater(() -> {
+            pending.remove(name);
+            QueueServer current = main.getQueueManager().findServer(name);
+            if(current == null || current.getQueueSize() == 0) return;
+
+            long start = System.currentTimeMillis();
+            try {
+                main.getQueueManager().sendPlayers(current);
+            } catch(Exception e) {
+                main.getLogger().warning("An error occurred while sending players for "+name+":", e);
+                return;
+            }
+
+            // if someone was sent and there are more players, the next one can go after the send interval
+            boolean sent = current.getLastSentTime() <= System.currentTimeMillis() - start;
+            if(sent) wake(current);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wakes every queue that can send players to this server
+     */
+    public void wakeServer(String serverName) {
+        if(!isEnabled() || main.getQueueManager() == null) return;
+        for(QueueServer queueServer : main.getQueueManager().getServers()) {
+            if(queueServer.getServerNames().contains(serverName)) {
+                wake(queueServer);
+            }
+        }
+    }
+
+    public void onPlayerJoinServer(AdaptedPlayer player) {
+        if(!isEnabled()) return;
+        String serverName = player.getServerName();
+        String previous = serverName == null ? lastServers.remove(player.getUniqueId()) : lastServers.put(player.getUniqueId(), serverName);
+        if(previous != null && !previous.equals(serverName)) {
+            Debug.info("[send-scheduler] "+player.getName()+" left "+previous);
+            wakeServer(previous);
+        }
+    }
+
+    public void onPlayerLeave(AdaptedPlayer player) {
+        String previous = lastServers.remove(player.getUniqueId());
+        if(previous != null) wakeServer(previous);
+    }
+
+    /**
+     * Wakes the queues for this server if the ping shows that it has more free slots than before
+     * @param ping The ping, or null if the server is offline
+     */
+    public void onPing(AdaptedServer server, AdaptedServerPing ping) {
+        if(!isEnabled()) return;
+        if(ping == null) {
+            lastFreeSlots.remove(server.getName());
+            return;
+        }
+        onFreeSlots(server, ping.getMaxPlayers() - ping.getPlayerCount());
+    }
+
+    /**
+     * Wakes the queues for this server if it has more free slots than last time we checked
+     * (from a ping or a heartbeat)
+     */
+    public void onFreeSlots(AdaptedServer server, int free) {
+        if(!isEnabled()) return;
+        free = Math.max(0, free);
+        Integer previous = lastFreeSlots.put(server.getName(), free);
+        if(free > 0 && (previous == null || free > previous)) {
+            wakeServer(server.getName());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package us.ajg0702.queue.common;
+
+import us.ajg0702.queue.api.server.ServerHealth;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Remembers the results of the last {@link #SAMPLES} pings to a server, and when it last went up or down.
+ */
+public class ServerHealthTracker implements ServerHealth {
+
+    static final int SAMPLES = 64;
+    private static final long STATE_CHANGE_WINDOW = 10 * 60 * 1000;
+
+    // ring buffers of the last pings. latency is -1 for failed pings
+    private final long[] latencies = new long[SAMPLES];
+    private int next = 0;
+    private int count = 0;
+
+    private long lastLatency = -1;
+    private Boolean up = null;
+    private long lastStateChange = -1;
+    private final Deque<Long> stateChanges = new ArrayDeque<>();
+
+    public synchronized void recordSuccess(long latency) {
+        lastLatency = latency;
+        record(latency);
+        setUp(true);
+    }
+
+    public synchronized void recordFailure() {
+        record(-1);
+        setUp(false);
+    }
+
+    private void record(long latency) {
+        latencies[next] = latency;
+        next = (next + 1) % SAMPLES;
+        count = Math.min(count + 1, SAMPLES);
+    }
+
+    private void setUp(boolean nowUp) {
+        long now = System.currentTimeMillis();
+        if(up != null && up != nowUp) {
+            lastStateChange = now;
+            stateChanges.addLast(now);
+        }
+        up = nowUp;
+        while(!stateChanges.isEmpty() && now - stateChanges.peekFirst() > STATE_CHANGE_WINDOW) {
+            stateChanges.removeFirst();
+        }
+    }
+
+    @Override
+    public synchronized int getSampleCount() {
+        return count;
+    }
+
+    @Override
+    public synchronized long getLastLatency() {
+        return lastLatency;
+    }
+
+    @Override
+    public synchronized double getAverageLatency() {
+        long total = 0;
+        int successes = 0;
+        for(int i = 0; i < count; i++) {
+            if(latencies[i] < 0) continue;
+            total += latencies[i];
+            successes++;
+        }
+        return successes == 0 ? -1 : (double) total / successes;
+    }
+
+    @Override
+    public synchronized long getLatencyPercentile(double percentile) {
+        long[] sorted = Arrays.stream(latencies, 0, count).filter(l -> l >= 0).sorted().toArray();
+        if(sorted.length == 0) return -1;
+        double clamped = Math.min(Math.max(percentile, 0), 100);
+        int index = (int) Math.ceil(clamped / 100 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    @Override
+    public synchronized double getSuccessRatio() {
+        if(count == 0) return 1;
+        int successes = 0;
+        for(int i = 0; i < count; i++) {
+            if(latencies[i] >= 0) successes++;
+        }
+        return (double) successes / count;
+    }
+
+    @Override
+    public synchronized boolean isUp() {
+        return up != null && up;
+    }
+
+    @Override
+    public synchronized long getTimeSinceStateChange() {
+        return lastStateChange < 0 ? -1 : System.currentTimeMillis() - lastStateChange;
+    }
+
+    @Override
+    public synchronized int getRecentStateChanges() {
+        long now = System.currentTimeMillis();
+        while(!stateChanges.isEmpty() && now - stateChanges.peekFirst() > STATE_CHANGE_WINDOW) {
+            stateChanges.removeFirst();
+        }
+        return stateChanges.size();
+    }
+}
@@ -0,0 +1,150 @@
+package us.ajg0702.queue.common;
+
+import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.api.server.AdaptedServerPing;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends pings to servers on the server update pool.
+ * <p>
+ * Only one ping to each server can be in progress at a time. Asking for another one while a server
+ * hasn't answered yet gives back the ping that is already in progress, so a server that hangs
+ * can't pile up pings (and threads). Pings that aren't answered within ping-timeout fail with a {@link TimeoutException},
+ * and the server is marked as offline. The server still counts as being pinged until the platform gives up on the ping itself.
+ * The result and round-trip time of every ping is recorded in the server's {@link ServerHealthTracker}.
+ */
+public class ServerPinger {
+
+    private final QueueMain main;
+
+    // lowercase server name -> ping in progress (failing after ping-timeout)
+    private final Map<String, CompletableFuture<AdaptedServerPing>> inFlight = new ConcurrentHashMap<>();
+    // lowercase server name -> health
+    private final Map<String, ServerHealthTracker> health = new ConcurrentHashMap<>();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public ServerPinger(QueueMain main) {
+        this.main = main;
+    }
+
+    /**
+     * Pings a server, or gets the ping that is already in progress for it
+     * @param server The server to ping
+     * @return A CompletableFuture with the ServerPing, which fails if the server is offline or doesn't answer in time
+     */
+    public CompletableFuture<AdaptedServerPing> ping(AdaptedServer server) {
+        String key = server.getName().toLowerCase(Locale.ROOT);
+        boolean debug = main.getConfig().getBoolean("pinger-debug");
+        long timeout = (long) (Math.max(main.getConfig().getDouble("ping-timeout"), 0.1) * 1000);
+
+        // completes when the platform is done with the ping, which can be long after it timed out
+        CompletableFuture<AdaptedServerPing> future = new CompletableFuture<>();
+        CompletableFuture<AdaptedServerPing> timed = future.copy().orTimeout(timeout, TimeUnit.MILLISECONDS);
+        CompletableFuture<AdaptedServerPing> existing = inFlight.putIfAbsent(key, timed);
+        if(existing != null) {
+            coalesced.incrementAndGet();
+            return existing;
+        }
+        sent.incrementAndGet();
+
+        // set again once the ping actually starts, so time spent waiting for a thread isn't counted as latency
+        AtomicLong started = new AtomicLong(System.nanoTime());
+        future.whenComplete((ping, e) -> {
+            inFlight.remove(key, timed);
+            ((QueueManagerImpl) main.getQueueManager()).onServerStateChanged(server);
+        });
+        timed.whenComplete((ping, e) -> {
+            ServerHealthTracker tracker = getHealth(server.getName());
+            if(e == null) {
+                tracker.recordSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started.get()));
+            } else {
+                tracker.recordFailure();
+            }
+            if(e instanceof TimeoutException) {
+                timedOut.incrementAndGet();
+                // the server is hanging, so don't keep sending players to it based on its last ping
+                server.markOffline();
+                ((QueueManagerImpl) main.getQueueManager()).onServerStateChanged(server);
+                if(debug) main.getLogger().info("[pinger] ["+server.getName()+"] timed out after "+timeout+"ms");
+            }
+        });
+
+        try {
+            main.getTaskManager().getServersUpdateExecutor().submit(() -> {
+                started.set(System.nanoTime());
+                try {
+                    server.ping(debug, main.getLogger()).whenComplete((ping, e) -> {
+                        if(e != null) {
+                            future.completeExceptionally(e);
+                        } else {
+                            future.complete(ping);
+                        }
+                    });
+                } catch(Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return timed;
+    }
+
+    /**
+     * Gets the ping statistics for a server
+     * @param serverName The name of the server
+     * @return The server's health. Servers that haven't been pinged yet have no samples
+     */
+    public ServerHealthTracker getHealth(String serverName) {
+        return health.computeIfAbsent(serverName.toLowerCase(Locale.ROOT), k -> new ServerHealthTracker());
+    }
+
+    public boolean isPinging(AdaptedServer server) {
+        return inFlight.containsKey(server.getName().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Gets the number of servers that haven't answered their ping yet
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Gets the number of pings that are currently being sent by a thread in the pool
+     */
+    public int getActive() {
+        ExecutorService pool = main.getTaskManager().getServersUpdateExecutor();
+        return pool instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) pool).getActiveCount() : 0;
+    }
+
+    /**
+     * Gets the number of pings that are waiting for a free thread in the pool
+     */
+    public int getQueued() {
+        ExecutorService pool = main.getTaskManager().getServersUpdateExecutor();
+        return pool instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) pool).getQueue().size() : 0;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * Gets the number of pings that weren't sent because one was already in progress for that server
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+}
@@ -0,0 +1,93 @@
+package us.ajg0702.queue.common;
+
+import com.google.common.collect.ImmutableList;
+import us.ajg0702.queue.api.players.QueuePlayer;
+import us.ajg0702.queue.api.queueholders.QueueHolder;
+import us.ajg0702.queue.api.queues.QueueServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The default QueueHolder when single-writer-queue-state is enabled.
+ * Every change is already made on the queue state thread, so the queue is a plain list instead of one
+ * that is copied on every change. Other threads read it through {@link #getSnapshot()}, which is only copied once per change.
+ */
+public class SingleWriterQueueHolder extends QueueHolder {
+
+    private final List<QueuePlayer> queue = new ArrayList<>();
+
+    public SingleWriterQueueHolder(QueueServer queueServer) {
+        super(queueServer);
+    }
+
+    @Override
+    protected boolean isVersioned() {
+        return true;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return "default";
+    }
+
+    @Override
+    public synchronized void addPlayer(QueuePlayer player) {
+        queue.add(player);
+        markModified();
+    }
+
+    @Override
+    public synchronized void addPlayer(QueuePlayer player, int position) {
+        queue.add(position, player);
+        markModified();
+    }
+
+    @Override
+    public synchronized void addPlayerByPriority(QueuePlayer player) {
+        int priority = player.getPriority();
+        int i = 0;
+        for(QueuePlayer queuePlayer : queue) {
+            if(queuePlayer.getPriority() < priority) break;
+            i++;
+        }
+        queue.add(i, player);
+        markModified();
+    }
+
+    @Override
+    public synchronized void removePlayer(QueuePlayer player) {
+        if(queue.remove(player)) markModified();
+    }
+
+    @Override
+    public synchronized QueuePlayer findPlayer(UUID uuid) {
+        for(QueuePlayer queuePlayer : queue) {
+            if(queuePlayer.getUniqueId().equals(uuid)) {
+                return queuePlayer;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized QueuePlayer findPlayer(String name) {
+        for(QueuePlayer queuePlayer : queue) {
+            if(queuePlayer.getName().equalsIgnoreCase(name)) {
+                return queuePlayer;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public synchronized List<QueuePlayer> getAllPlayers() {
+        return ImmutableList.copyOf(queue);
+    }
+}
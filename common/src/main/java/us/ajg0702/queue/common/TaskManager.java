@@ -1,6 +1,8 @@
 package us.ajg0702.queue.common;
 
+import us.ajg0702.queue.common.queues.SendRateController;
 import us.ajg0702.queue.common.utils.QueueThreadFactory;
+import us.ajg0702.queue.common.utils.TimingWheel;
 
 import java.util.Arrays;
 import java.util.List;
@@ -11,23 +13,54 @@ public class TaskManager {
 
     final ScheduledExecutorService executor = Executors.newScheduledThreadPool(1, new QueueThreadFactory("GENERIC"));
     final ScheduledExecutorService updateExecutor = Executors.newScheduledThreadPool(1, new QueueThreadFactory("UPDATE-EXECUTOR"));
-    final ExecutorService serversUpdateExecutor = Executors.newCachedThreadPool(new QueueThreadFactory("SERVER-UPDATE"));
+    // resized to ping-threads in rescheduleTasks
+    final ThreadPoolExecutor serversUpdateExecutor = new ThreadPoolExecutor(
+            4, 4,
+            60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new QueueThreadFactory("SERVER-UPDATE")
+    );
+    ExecutorService sendExecutor;
+
+    final TimingWheel timingWheel;
 
     final QueueMain main;
     public TaskManager(QueueMain main) {
         this.main = main;
+        // 100ms ticks, 512 buckets (about 51 seconds per turn)
+        timingWheel = new TimingWheel(100, 512, main.getLogger());
+        serversUpdateExecutor.allowCoreThreadTimeOut(true);
+        scheduleAtFixedRate(executor, timingWheel::tick, timingWheel.getTickMillis(), timingWheel.getTickMillis(), TimeUnit.MILLISECONDS);
     }
 
     public void shutdown() {
         executor.shutdown();
         updateExecutor.shutdown();
         serversUpdateExecutor.shutdown();
+        if(sendExecutor != null) {
+            sendExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Gets the timing wheel used for cooldowns, anti-spam windows and removing players that have been offline for too long
+     */
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
     }
 
     public ExecutorService getServersUpdateExecutor() {
         return serversUpdateExecutor;
     }
 
+    /**
+     * Gets the pool that the send task spreads queues across
+     * @return the pool, or null if parallel sending is disabled
+     */
+    public ExecutorService getSendExecutor() {
+        return sendExecutor;
+    }
+
     public String taskStatus() {
         List<ScheduledFuture<?>> tasks = Arrays.asList(sendTask, updateTask, messageTask, actionBarTask, titleTask, queueEventTask, reloadServerTask);
         StringBuilder sb = new StringBuilder();
@@ -48,9 +81,33 @@ public class TaskManager {
     public void rescheduleTasks() {
         cancelTasks();
 
+        int sendThreads = main.getConfig().getInt("parallel-send-threads");
+        if(sendExecutor != null) {
+            sendExecutor.shutdown();
+        }
+        sendExecutor = sendThreads > 0 ? Executors.newFixedThreadPool(sendThreads, new QueueThreadFactory("SEND")) : null;
+
+        int pingThreads = Math.max(main.getConfig().getInt("ping-threads"), 1);
+        if(pingThreads > serversUpdateExecutor.getMaximumPoolSize()) {
+            serversUpdateExecutor.setMaximumPoolSize(pingThreads);
+            serversUpdateExecutor.setCorePoolSize(pingThreads);
+        } else {
+            serversUpdateExecutor.setCorePoolSize(pingThreads);
+            serversUpdateExecutor.setMaximumPoolSize(pingThreads);
+        }
+
+        double sendPeriod = main.getConfig().getDouble("wait-time");
+        if(SendRateController.isEnabled(main)) {
+            // each queue waits for its own interval, so the task has to run at least as often as the fastest one
+            sendPeriod = Math.min(sendPeriod, main.getConfig().getDouble("adaptive-send-rate-min-wait"));
+        }
+        if(main.getSendScheduler().isEnabled()) {
+            // queues are woken up when something changes, so this is only a fallback for anything that was missed
+            sendPeriod = Math.max(sendPeriod, main.getConfig().getDouble("event-driven-sending-fallback-time"));
+        }
         sendTask = scheduleAtFixedRate(
                 main.getQueueManager()::sendPlayers,
-                (long) (main.getConfig().getDouble("wait-time")*1000L),
+                (long) (Math.max(sendPeriod, 0.05)*1000L),
                 TimeUnit.MILLISECONDS
         );
 
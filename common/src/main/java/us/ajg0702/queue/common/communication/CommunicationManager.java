@@ -20,6 +20,7 @@ public class CommunicationManager {
 
         handlers = new MapBuilder<>(
             "ack", new AckHandler(main),
+                "heartbeat", new HeartbeatHandler(main),
 
                 "queue", new QueueHandler(main),
                 "massqueue", new MassQueueHandler(main),
@@ -37,7 +38,7 @@ public class CommunicationManager {
         );
     }
 
-    public void handle(AdaptedPlayer receivingPlayer, byte[] data) throws IOException {
+    public void handle(AdaptedPlayer receivingPlayer, String sourceServer, byte[] data) throws IOException {
         DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
         String subChannel = in.readUTF();
 
@@ -48,7 +49,7 @@ public class CommunicationManager {
             return;
         }
 
-        ComResponse response = handler.handleMessage(receivingPlayer, in.readUTF());
+        ComResponse response = handler.handleMessage(receivingPlayer, sourceServer, in.readUTF());
 
         if(response == null) return;
         if(!receivingPlayer.isConnected()) return;
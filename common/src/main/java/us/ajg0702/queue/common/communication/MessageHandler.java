@@ -12,4 +12,13 @@ public abstract class MessageHandler {
     }
 
     public abstract ComResponse handleMessage(AdaptedPlayer player, String data);
+
+    /**
+     * Handles a message, knowing which server's connection sent it.
+     * Handlers that describe the sending server should override this instead of using the player's current server.
+     * @param sourceServer The name of the server that sent the message, or null if it isn't known
+     */
+    public ComResponse handleMessage(AdaptedPlayer player, String sourceServer, String data) {
+        return handleMessage(player, data);
+    }
 }
@@ -0,0 +1,57 @@
+package us.ajg0702.queue.common.communication.handlers;
+
+import us.ajg0702.queue.api.communication.ComResponse;
+import us.ajg0702.queue.api.players.AdaptedPlayer;
+import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.api.server.ServerHeartbeat;
+import us.ajg0702.queue.common.QueueMain;
+import us.ajg0702.queue.common.QueueManagerImpl;
+import us.ajg0702.queue.common.communication.MessageHandler;
+import us.ajg0702.queue.common.utils.Debug;
+
+public class HeartbeatHandler extends MessageHandler {
+    public HeartbeatHandler(QueueMain main) {
+        super(main);
+    }
+
+    @Override
+    public ComResponse handleMessage(AdaptedPlayer player, String data) {
+        // without the connection that sent it, we can't tell which server it is about
+        return null;
+    }
+
+    @Override
+    public ComResponse handleMessage(AdaptedPlayer player, String serverName, String data) {
+        long keepFor = (long) (main.getConfig().getDouble("heartbeat-timeout") * 1000);
+        if(keepFor <= 0) return null;
+
+        // use the server that sent it, since the player could already be switching to another one
+        if(serverName == null) return null;
+        AdaptedServer server = main.getPlatformMethods().getServer(serverName);
+        if(server == null) return null;
+
+        ServerHeartbeat heartbeat;
+        try {
+            heartbeat = ServerHeartbeat.decode(data, keepFor);
+        } catch(IllegalArgumentException e) {
+            Debug.info("Ignoring heartbeat from "+serverName+": "+e.getMessage());
+            return null;
+        }
+        ServerHeartbeat previous = server.getLastHeartbeat().orElse(null);
+        heartbeat.continueFrom(previous);
+        server.setLastHeartbeat(heartbeat);
+        ((QueueManagerImpl) main.getQueueManager()).onServerStateChanged(server);
+
+        main.getSendScheduler().onFreeSlots(server, heartbeat.getMaxPlayers() - heartbeat.getPlayerCount());
+
+        // the whitelist changed, so ping the server to get the new list from its motd
+        boolean whitelistChanged = previous == null || previous.getWhitelistDigest() != heartbeat.getWhitelistDigest();
+        if(
+                whitelistChanged && !server.isWhitelistKnown()
+        ) {
+            main.getServerPinger().ping(server)
+                    .whenComplete((ping, e) -> main.getSendScheduler().onPing(server, e == null ? ping : null));
+        }
+        return null;
+    }
+}
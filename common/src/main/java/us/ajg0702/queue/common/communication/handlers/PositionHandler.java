@@ -1,6 +1,7 @@
 package us.ajg0702.queue.common.communication.handlers;
 
 import us.ajg0702.queue.api.players.AdaptedPlayer;
+import us.ajg0702.queue.api.players.QueuePlayer;
 import us.ajg0702.queue.api.queues.QueueServer;
 import us.ajg0702.queue.common.QueueMain;
 import us.ajg0702.queue.api.communication.ComResponse;
@@ -18,7 +19,8 @@ public class PositionHandler extends MessageHandler {
         Integer pos = null;
         String noneMessage = null;
         if(server != null) {
-            pos = server.getQueue().indexOf(server.findPlayer(player)) + 1;
+            QueuePlayer queuePlayer = server.findPlayer(player);
+            pos = queuePlayer == null ? 0 : queuePlayer.getPosition();
         } else {
             noneMessage = main.getMessages().getString("placeholders.position.none");
         }
@@ -19,7 +19,7 @@ public class PositionOfHandler extends MessageHandler {
         Integer size = null;
         String noneMessage = null;
         if(server != null) {
-            size = server.getQueue().size();
+            size = server.getQueueSize();
         } else {
             noneMessage = main.getMessages().getString("placeholders.position.none");
         }
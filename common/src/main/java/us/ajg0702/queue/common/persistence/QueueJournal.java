@@ -0,0 +1,353 @@
+package us.ajg0702.queue.common.persistence;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import us.ajg0702.queue.api.QueueManager;
+import us.ajg0702.queue.api.players.QueuePlayer;
+import us.ajg0702.queue.api.queues.QueueServer;
+import us.ajg0702.queue.common.QueueMain;
+import us.ajg0702.queue.common.utils.Debug;
+import us.ajg0702.queue.common.utils.QueueThreadFactory;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Keeps queues across proxy restarts.
+ * Queue changes are appended to a memory-mapped journal, which is periodically compacted into a snapshot.
+ * Recording a change only encodes it and adds it to a pending list. Writing and syncing to disk is done in batches
+ * on the journal thread.
+ */
+public class QueueJournal {
+
+    private static final int MAGIC = 0x414A514A;
+    private static final int VERSION = 1;
+
+    // magic, version, last time the proxy was known to be running
+    private static final int HEADER_SIZE = 16;
+    private static final int LAST_ALIVE_OFFSET = 8;
+    private static final int JOURNAL_SIZE = 8 * 1024 * 1024;
+
+    private static final long COMPACT_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte PAUSE = 3;
+
+    private final QueueMain main;
+    private final File journalFile;
+    private final File snapshotFile;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new QueueThreadFactory("JOURNAL"));
+    private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+
+    private final Map<String, RestoredQueue> restored = new ConcurrentHashMap<>();
+    private volatile boolean restoring = true;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long lastCompaction = System.currentTimeMillis();
+    private boolean dirty = false;
+    private boolean warnedFull = false;
+
+    public QueueJournal(QueueMain main, File dataFolder) throws IOException {
+        this.main = main;
+        journalFile = new File(dataFolder, "queues.journal");
+        snapshotFile = new File(dataFolder, "queues.snapshot");
+
+        long lastAlive = readSnapshot();
+        lastAlive = Math.max(lastAlive, openJournal());
+
+        for(RestoredQueue queue : restored.values()) {
+            for(RestoredQueue.RestoredPlayer player : queue.getPlayers()) {
+                if(player.getLeaveTime() == 0) player.setLeaveTime(lastAlive);
+            }
+        }
+
+        long flushInterval = Math.max(main.getConfig().getInt("persist-queues-flush-interval"), 50);
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch(Exception e) {
+                main.getLogger().warning("An error occurred while writing the queue journal:", e);
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordAdd(QueueServer server, QueuePlayer player, int position) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeByte(ADD);
+        out.writeUTF(server.getName());
+        out.writeLong(player.getUniqueId().getMostSignificantBits());
+        out.writeLong(player.getUniqueId().getLeastSignificantBits());
+        out.writeUTF(player.getName());
+        out.writeInt(player.getPriority());
+        out.writeInt(player.getMaxOfflineTime());
+        out.writeInt(position);
+        pending.add(out.toByteArray());
+    }
+
+    public void recordRemove(QueueServer server, QueuePlayer player) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeByte(REMOVE);
+        out.writeUTF(server.getName());
+        out.writeLong(player.getUniqueId().getMostSignificantBits());
+        out.writeLong(player.getUniqueId().getLeastSignificantBits());
+        pending.add(out.toByteArray());
+    }
+
+    public void recordPause(QueueServer server, boolean paused) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeByte(PAUSE);
+        out.writeUTF(server.getName());
+        out.writeBoolean(paused);
+        pending.add(out.toByteArray());
+    }
+
+    /**
+     * Gets the queue that was read from disk on startup, if there is one for this name.
+     * Each queue can only be taken once.
+     */
+    public RestoredQueue takeRestored(String name) {
+        if(!restoring) return null;
+        return restored.remove(name);
+    }
+
+    /**
+     * Called once the restored queues have been loaded.
+     * Anything that wasn't taken (e.g. queues for servers that were removed) is dropped
+     * and the journal is compacted to match the queues that actually exist.
+     */
+    public void finishRestore() {
+        if(!restoring) return;
+        restoring = false;
+        if(!restored.isEmpty()) {
+            Debug.info("[journal] Dropping restored queues that no longer exist: "+restored.keySet());
+            restored.clear();
+        }
+        executor.execute(this::compact);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if(!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                main.getLogger().warning("Timed out waiting for the queue journal to finish writing");
+            }
+        } catch (InterruptedException ignored) {}
+        try {
+            flush();
+            channel.close();
+        } catch (Exception e) {
+            main.getLogger().warning("An error occurred while closing the queue journal:", e);
+        }
+    }
+
+    private void flush() {
+        int start = buffer.position();
+        byte[] record;
+        while((record = pending.poll()) != null) {
+            if(buffer.remaining() < record.length + 4) {
+                // the live queues already contain every pending change, so compacting covers the rest of them
+                if(compact()) return;
+                if(!warnedFull) {
+                    main.getLogger().warning("The queue journal is full and cannot be compacted yet. Some queue changes will not be saved.");
+                    warnedFull = true;
+                }
+                pending.clear();
+                break;
+            }
+            buffer.putInt(record.length);
+            buffer.put(record);
+            dirty = true;
+        }
+        buffer.putLong(LAST_ALIVE_OFFSET, System.currentTimeMillis());
+        if(buffer.position() > start) {
+            buffer.force(start, buffer.position() - start);
+        }
+
+        if(dirty && System.currentTimeMillis() - lastCompaction > COMPACT_INTERVAL) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes the current queues to the snapshot file, then empties the journal.
+     * @return true if the compaction succeeded
+     */
+    private boolean compact() {
+        QueueManager queueManager = main.getQueueManager();
+        if(restoring || queueManager == null) return false;
+
+        // every change that is already pending has been applied to the queues we are about to save
+        pending.clear();
+
+        long now = System.currentTimeMillis();
+        File temp = new File(snapshotFile.getParentFile(), snapshotFile.getName()+".tmp");
+        try(FileOutputStream fileOut = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(now);
+
+            List<QueueServer> servers = queueManager.getServers();
+            out.writeInt(servers.size());
+            for(QueueServer server : servers) {
+                List<QueuePlayer> players = server.getQueue();
+                out.writeUTF(server.getName());
+                out.writeBoolean(server.isPaused());
+                out.writeInt(players.size());
+                for(QueuePlayer player : players) {
+                    out.writeLong(player.getUniqueId().getMostSignificantBits());
+                    out.writeLong(player.getUniqueId().getLeastSignificantBits());
+                    out.writeUTF(player.getName());
+                    out.writeInt(player.getPriority());
+                    out.writeInt(player.getMaxOfflineTime());
+                    out.writeLong(player.getPlayer() == null ? now - player.getTimeSinceOnline() : 0);
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            main.getLogger().warning("Unable to write the queue snapshot:", e);
+            return false;
+        }
+
+        try {
+            Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            main.getLogger().warning("Unable to replace the queue snapshot:", e);
+            return false;
+        }
+
+        int end = buffer.position();
+        byte[] zeros = new byte[Math.min(end, 64 * 1024)];
+        buffer.position(HEADER_SIZE);
+        while(buffer.position() < end) {
+            buffer.put(zeros, 0, Math.min(zeros.length, end - buffer.position()));
+        }
+        buffer.position(HEADER_SIZE);
+        buffer.putLong(LAST_ALIVE_OFFSET, now);
+        buffer.force();
+
+        lastCompaction = now;
+        dirty = false;
+        warnedFull = false;
+        Debug.info("[journal] Compacted queue journal ("+end+" bytes)");
+        return true;
+    }
+
+    /**
+     * @return the time the snapshot was written, or 0 if there is none
+     */
+    private long readSnapshot() {
+        if(!snapshotFile.exists()) return 0;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                main.getLogger().warning("The queue snapshot is not in a format this version understands. Ignoring it.");
+                return 0;
+            }
+            long time = in.readLong();
+            int queues = in.readInt();
+            for(int i = 0; i < queues; i++) {
+                RestoredQueue queue = getRestored(in.readUTF());
+                queue.setPaused(in.readBoolean());
+                int players = in.readInt();
+                for(int j = 0; j < players; j++) {
+                    UUID uuid = new UUID(in.readLong(), in.readLong());
+                    String name = in.readUTF();
+                    int priority = in.readInt();
+                    int maxOfflineTime = in.readInt();
+                    long leaveTime = in.readLong();
+                    queue.add(new RestoredQueue.RestoredPlayer(uuid, name, priority, maxOfflineTime, leaveTime), -1);
+                }
+            }
+            return time;
+        } catch (IOException e) {
+            main.getLogger().warning("Unable to read the queue snapshot. Queues will only be restored from the journal.", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Maps the journal, replays the records in it and moves the write position to the end of them
+     * @return the last time the proxy was known to be running, or 0 if the journal is new
+     */
+    private long openJournal() throws IOException {
+        boolean existed = journalFile.exists() && journalFile.length() >= HEADER_SIZE;
+        channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, JOURNAL_SIZE);
+
+        if(!existed || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            if(existed) {
+                main.getLogger().warning("The queue journal is not in a format this version understands. Starting a new one.");
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.put(HEADER_SIZE, new byte[JOURNAL_SIZE - HEADER_SIZE]);
+            buffer.putLong(LAST_ALIVE_OFFSET, 0);
+            buffer.position(HEADER_SIZE);
+            buffer.force();
+            return 0;
+        }
+
+        int records = 0;
+        buffer.position(HEADER_SIZE);
+        while(buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if(length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            byte[] record = new byte[length];
+            buffer.get(record);
+            try {
+                replay(ByteStreams.newDataInput(record));
+            } catch(IllegalStateException e) {
+                // a record that was only partly written before the proxy went down
+                main.getLogger().warning("Ignoring a damaged record at the end of the queue journal");
+                buffer.position(start);
+                break;
+            }
+            records++;
+        }
+        dirty = records > 0;
+        Debug.info("[journal] Replayed "+records+" queue journal records");
+        return buffer.getLong(LAST_ALIVE_OFFSET);
+    }
+
+    private void replay(ByteArrayDataInput in) {
+        byte type = in.readByte();
+        RestoredQueue queue = getRestored(in.readUTF());
+        switch(type) {
+            case ADD:
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                String name = in.readUTF();
+                int priority = in.readInt();
+                int maxOfflineTime = in.readInt();
+                int position = in.readInt();
+                queue.add(new RestoredQueue.RestoredPlayer(uuid, name, priority, maxOfflineTime, 0), position);
+                break;
+            case REMOVE:
+                queue.remove(new UUID(in.readLong(), in.readLong()));
+                break;
+            case PAUSE:
+                queue.setPaused(in.readBoolean());
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type "+type);
+        }
+    }
+
+    private RestoredQueue getRestored(String name) {
+        return restored.computeIfAbsent(name, RestoredQueue::new);
+    }
+}
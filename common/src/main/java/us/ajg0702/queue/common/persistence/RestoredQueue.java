@@ -0,0 +1,96 @@
+package us.ajg0702.queue.common.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The state of a queue as it was read back from the journal
+ */
+public class RestoredQueue {
+
+    private final String name;
+    private boolean paused;
+    private final List<RestoredPlayer> players = new ArrayList<>();
+
+    RestoredQueue(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    public List<RestoredPlayer> getPlayers() {
+        return players;
+    }
+
+    void add(RestoredPlayer player, int position) {
+        if(find(player.getUniqueId()) != -1) return;
+        if(position < 0 || position > players.size()) position = players.size();
+        players.add(position, player);
+    }
+
+    void remove(UUID uuid) {
+        int index = find(uuid);
+        if(index != -1) players.remove(index);
+    }
+
+    private int find(UUID uuid) {
+        for(int i = 0; i < players.size(); i++) {
+            if(players.get(i).getUniqueId().equals(uuid)) return i;
+        }
+        return -1;
+    }
+
+    public static class RestoredPlayer {
+        private final UUID uuid;
+        private final String name;
+        private final int priority;
+        private final int maxOfflineTime;
+        private long leaveTime;
+
+        RestoredPlayer(UUID uuid, String name, int priority, int maxOfflineTime, long leaveTime) {
+            this.uuid = uuid;
+            this.name = name;
+            this.priority = priority;
+            this.maxOfflineTime = maxOfflineTime;
+            this.leaveTime = leaveTime;
+        }
+
+        public UUID getUniqueId() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public int getMaxOfflineTime() {
+            return maxOfflineTime;
+        }
+
+        /**
+         * When the player left the proxy, or 0 if they were still online when the journal was last written
+         */
+        public long getLeaveTime() {
+            return leaveTime;
+        }
+
+        void setLeaveTime(long leaveTime) {
+            this.leaveTime = leaveTime;
+        }
+    }
+}
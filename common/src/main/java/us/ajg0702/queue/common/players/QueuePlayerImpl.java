@@ -6,6 +6,7 @@ import us.ajg0702.queue.api.players.AdaptedPlayer;
 import us.ajg0702.queue.api.players.QueuePlayer;
 import us.ajg0702.queue.api.queues.QueueServer;
 import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.common.queues.QueueServerImpl;
 
 import java.util.UUID;
 
@@ -24,7 +25,7 @@ public class QueuePlayerImpl implements QueuePlayer {
 
     private final AdaptedServer initialServer;
 
-    public int lastPosition;
+    public volatile int lastPosition;
 
     public QueuePlayerImpl(UUID uuid, String name, QueueServer server, int highestPriority, int maxOfflineTime) {
         this(null, name, uuid, server, highestPriority, maxOfflineTime);
@@ -63,7 +64,7 @@ public class QueuePlayerImpl implements QueuePlayer {
 
     @Override
     public int getPosition() {
-        return getQueueServer().getQueue().indexOf(this)+1;
+        return getQueueServer().getQueueHolder().getPosition(this);
     }
 
     @Nullable
@@ -79,6 +80,10 @@ public class QueuePlayerImpl implements QueuePlayer {
             throw new IllegalArgumentException("UUIDs do not match");
         }
         this.player = player;
+        if(player != null && server instanceof QueueServerImpl) {
+            // the player might be behind the offline players the send loop is skipping
+            ((QueueServerImpl) server).getHeadCursor().reset();
+        }
     }
 
     @Override
@@ -0,0 +1,93 @@
+package us.ajg0702.queue.common.queues;
+
+/**
+ * Remembers how many players at the front of a queue are offline, so that finding the next player
+ * to send doesn't have to step over them again on every pass.
+ * <p>
+ * The cursor is tied to the queue's modification count. Adds and removals made through the queue
+ * move it along, and anything it wasn't told about (or a player in the queue coming back online)
+ * makes it start from the front again.
+ */
+public class HeadCursor {
+
+    private long epoch = 0;
+    private long modCount = -1;
+    // every player before this index was offline
+    private int index = 0;
+
+    /**
+     * Gets the epoch to pass back to {@link #getStart(long, long)} and {@link #advance(long, long, int)},
+     * so that scans started before a reset can't move the cursor
+     */
+    public synchronized long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Gets the index to start looking for an online player at
+     * @param modCount The modification count of the snapshot that will be scanned
+     */
+    public synchronized int getStart(long epoch, long modCount) {
+        if(epoch != this.epoch || modCount != this.modCount) return 0;
+        return index;
+    }
+
+    /**
+     * Called after a scan found that every player before this index is offline
+     */
+    public synchronized void advance(long epoch, long modCount, int index) {
+        if(epoch != this.epoch) return;
+        if(modCount != this.modCount) {
+            this.modCount = modCount;
+            this.index = index;
+            return;
+        }
+        this.index = Math.max(this.index, index);
+    }
+
+    /**
+     * Called after a player was added to the queue
+     * @param before The modification count before the player was added
+     * @param after The modification count after the player was added
+     * @param index The index the player was added at
+     * @param online If the player that was added is online
+     */
+    public synchronized void added(long before, long after, int index, boolean online) {
+        if(!moved(before, after)) return;
+        if(index < this.index) {
+            this.index = online ? index : this.index + 1;
+        }
+    }
+
+    /**
+     * Called after a player was removed from the queue
+     * @param before The modification count before the player was removed
+     * @param after The modification count after the player was removed
+     * @param index The index the player was removed from
+     */
+    public synchronized void removed(long before, long after, int index) {
+        if(!moved(before, after)) return;
+        if(index >= 0 && index < this.index) {
+            this.index--;
+        }
+    }
+
+    /**
+     * Makes the next scan start from the front of the queue
+     */
+    public synchronized void reset() {
+        epoch++;
+        index = 0;
+        modCount = -1;
+    }
+
+    private boolean moved(long before, long after) {
+        // only follow the change if it is the only one since the cursor was last updated
+        if(before == this.modCount && after == before + 1) {
+            this.modCount = after;
+            return true;
+        }
+        reset();
+        return false;
+    }
+}
@@ -8,17 +8,26 @@ import us.ajg0702.queue.api.players.QueuePlayer;
 import us.ajg0702.queue.api.queueholders.QueueHolder;
 import us.ajg0702.queue.api.queues.Balancer;
 import us.ajg0702.queue.api.queues.QueueServer;
+import us.ajg0702.queue.api.queues.QueueStatus;
 import us.ajg0702.queue.api.server.AdaptedServer;
 import us.ajg0702.queue.api.server.AdaptedServerPing;
 import us.ajg0702.queue.common.QueueMain;
+import us.ajg0702.queue.common.QueueManagerImpl;
+import us.ajg0702.queue.common.QueueStateActor;
+import us.ajg0702.queue.common.persistence.QueueJournal;
+import us.ajg0702.queue.common.persistence.RestoredQueue;
 import us.ajg0702.queue.common.players.QueuePlayerImpl;
 import us.ajg0702.queue.common.queues.balancers.DefaultBalancer;
 import us.ajg0702.queue.common.queues.balancers.FirstBalancer;
 import us.ajg0702.queue.common.queues.balancers.MinigameBalancer;
 import us.ajg0702.queue.common.utils.Debug;
-import us.ajg0702.utils.common.Messages;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class QueueServerImpl implements QueueServer {
 
@@ -34,12 +43,28 @@ public class QueueServerImpl implements QueueServer {
 
     private Balancer balancer;
 
-    private boolean paused;
+    private volatile boolean paused;
 
     private long lastSentTime = 0;
 
     private int manualMaxPlayers = Integer.MAX_VALUE;
 
+    private final AtomicInteger positionChangeFrom = new AtomicInteger(Integer.MAX_VALUE);
+
+    private boolean journaling = false;
+
+    private final Lock sendLock = new ReentrantLock();
+
+    private final HeadCursor headCursor = new HeadCursor();
+
+    private static final UUID NO_PLAYER = new UUID(0, 0);
+    // player -> their ideal server, status and joinability for clearedGeneration
+    private final Map<UUID, PlayerState> playerStates = new ConcurrentHashMap<>();
+    private final AtomicLong stateGeneration = new AtomicLong();
+    private volatile long clearedGeneration = 0;
+
+    private final SendRateController sendRateController;
+
 
     public QueueServerImpl(String name, QueueMain main, AdaptedServer server, List<QueuePlayer> previousPlayers) {
         this(name, main, Collections.singletonList(server), previousPlayers);
@@ -49,6 +74,7 @@ public class QueueServerImpl implements QueueServer {
         this.name = name;
         this.servers = servers;
         this.main = main;
+        this.sendRateController = new SendRateController(main, name);
 
         List<String> types = main.getConfig().getStringList("balancer-types");
         for(String type : types) {
@@ -100,15 +126,15 @@ public class QueueServerImpl implements QueueServer {
 
         for(QueuePlayer queuePlayer : previousPlayers) {
             if(queuePlayer.getPlayer() == null) {
-                addPlayer(
-                        new QueuePlayerImpl(
-                                queuePlayer.getUniqueId(),
-                                queuePlayer.getName(),
-                                this,
-                                queuePlayer.getPriority(),
-                                queuePlayer.getMaxOfflineTime()
-                        )
+                QueuePlayerImpl offlinePlayer = new QueuePlayerImpl(
+                        queuePlayer.getUniqueId(),
+                        queuePlayer.getName(),
+                        this,
+                        queuePlayer.getPriority(),
+                        queuePlayer.getMaxOfflineTime()
                 );
+                offlinePlayer.setLeaveTime(System.currentTimeMillis() - queuePlayer.getTimeSinceOnline());
+                addPlayer(offlinePlayer);
             } else {
                 addPlayer(
                         new QueuePlayerImpl(
@@ -120,44 +146,47 @@ public class QueueServerImpl implements QueueServer {
                 );
             }
         }
+
+        journaling = true;
+    }
+
+    /**
+     * Adds players from the queue journal back to this queue as offline players.
+     * Players that have been offline for longer than their max offline time are skipped.
+     * @return the number of players that were added back
+     */
+    public int restore(RestoredQueue restoredQueue) {
+        setPaused(restoredQueue.isPaused());
+        int restoredCount = 0;
+        for(RestoredQueue.RestoredPlayer restoredPlayer : restoredQueue.getPlayers()) {
+            if(System.currentTimeMillis() - restoredPlayer.getLeaveTime() > restoredPlayer.getMaxOfflineTime()*1000L) continue;
+            QueuePlayerImpl queuePlayer = new QueuePlayerImpl(
+                    restoredPlayer.getUniqueId(),
+                    restoredPlayer.getName(),
+                    this,
+                    restoredPlayer.getPriority(),
+                    restoredPlayer.getMaxOfflineTime()
+            );
+            queuePlayer.setLeaveTime(restoredPlayer.getLeaveTime());
+            // these are already in the journal, and the manager's index is rebuilt once the servers are swapped in
+            queueHolder.addPlayer(queuePlayer);
+            restoredCount++;
+        }
+        headCursor.reset();
+        positionChange(0);
+        return restoredCount;
     }
 
     @Override
     public ImmutableList<QueuePlayer> getQueue() {
-        return ImmutableList.copyOf(queueHolder.getAllPlayers());
+        return queueHolder.getSnapshot();
     }
 
     @Override
     public String getStatusString(AdaptedPlayer p) {
-        Messages msgs = main.getMessages();
-        AdaptedServer server = getIdealServer(p);
-
-        if(server.getOfflineTime() > main.getConfig().getInt("offline-time")) {
-            return msgs.getString("status.offline.offline");
-        }
-
-        if(!server.isOnline()) {
-            return msgs.getString("status.offline.restarting");
-        }
-
-        if(isPaused()) {
-            return msgs.getString("status.offline.paused");
-        }
-
-        if(server.isWhitelisted() && (p == null || !server.getWhitelistedPlayers().contains(p.getUniqueId()))) {
-            return msgs.getString("status.offline.whitelisted");
-        }
-
-        if((server.isFull() && !server.canJoinFull(p)) || (isManuallyFull() && !AdaptedServer.canJoinFull(p, getName()))) {
-            return msgs.getString("status.offline.full");
-        }
-
-        if(p != null && !canAccess(p)) {
-            return msgs.getString("status.offline.restricted");
-        }
-
-
-        return "online";
+        QueueStatus status = getQueueStatus(p);
+        if(status.isOnline()) return "online";
+        return main.getMessages().getString("status.offline."+status.getKey());
     }
 
     @Override
@@ -167,37 +196,52 @@ public class QueueServerImpl implements QueueServer {
 
     @Override
     public String getStatus(AdaptedPlayer p) {
-        AdaptedServer server = getIdealServer(p);
-        if(server.getOfflineTime() > main.getConfig().getInt("offline-time")) {
-            return "offline";
+        return getQueueStatus(p).getKey();
+    }
+
+    @Override
+    public String getStatus() {
+        return getStatus(null);
+    }
+
+    @Override
+    public QueueStatus getQueueStatus(AdaptedPlayer p) {
+        PlayerState state = getPlayerState(p);
+        QueueStatus status = state.status;
+        if(status == null) {
+            status = calculateStatus(p, state.ideal);
+            state.status = status;
+        }
+        return status;
+    }
+
+    private QueueStatus calculateStatus(AdaptedPlayer p, AdaptedServer server) {
+        if(server == null || server.getOfflineTime() > main.getConfig().getInt("offline-time")) {
+            return QueueStatus.OFFLINE;
         }
 
         if(!server.isOnline()) {
-            return "restarting";
+            return QueueStatus.RESTARTING;
         }
 
         if(isPaused()) {
-            return "paused";
+            return QueueStatus.PAUSED;
         }
 
-        if(server.isWhitelisted() && (p == null || !server.getWhitelistedPlayers().contains(p.getUniqueId()))) {
-            return "whitelisted";
+        // also while the whitelist just changed and we are waiting for a ping with the new one, since nobody is sent then
+        if(server.isWhitelisted() && (p == null || !server.isPlayerWhitelisted(p.getUniqueId()))) {
+            return QueueStatus.WHITELISTED;
         }
 
-        if(((server.isFull() && !server.canJoinFull(p)) || (isManuallyFull() && !AdaptedServer.canJoinFull(p, getName())))) {
-            return "full";
+        if((server.isFull() && !server.canJoinFull(p)) || (isManuallyFull() && !AdaptedServer.canJoinFull(p, getName()))) {
+            return QueueStatus.FULL;
         }
 
         if(p != null && !canAccess(p)) {
-            return "restricted";
+            return QueueStatus.RESTRICTED;
         }
 
-        return "online";
-    }
-
-    @Override
-    public String getStatus() {
-        return getStatus(null);
+        return QueueStatus.ONLINE;
     }
 
     @Override
@@ -209,14 +253,62 @@ public class QueueServerImpl implements QueueServer {
         this.lastSentTime = lastSentTime;
     }
 
+    @Override
+    public double getSendInterval() {
+        return sendRateController.getInterval();
+    }
+
+    public SendRateController getSendRateController() {
+        return sendRateController;
+    }
+
     @Override
     public boolean isJoinable(AdaptedPlayer p) {
+        PlayerState state = getPlayerState(p);
+        Boolean joinable = state.joinable;
+        if(joinable == null) {
+            joinable = calculateJoinable(p, state.ideal);
+            state.joinable = joinable;
+        }
+        return joinable;
+    }
+
+    private boolean calculateJoinable(AdaptedPlayer p, AdaptedServer server) {
         if(isManuallyFull() && !AdaptedServer.canJoinFull(p, getName())) return false;
-        AdaptedServer server = getIdealServer(p);
         if(server == null) return false;
         return server.isJoinable(p) && !isPaused();
     }
 
+    /**
+     * Makes the cached ideal servers, statuses and joinability be worked out again.
+     * Called when one of this queue's servers gets a ping or heartbeat, or a player is sent to one of them.
+     */
+    public void invalidateState() {
+        stateGeneration.incrementAndGet();
+    }
+
+    /**
+     * Gets the cached ideal server, status and joinability for this player, for the current generation.
+     * The generation changes whenever one of this queue's servers gets a new ping or heartbeat, a player is sent to one of them,
+     * or the queue is paused or unpaused, so the balancer and permission checks only run again after that.
+     */
+    private PlayerState getPlayerState(AdaptedPlayer p) {
+        long generation = stateGeneration.get();
+        if(generation != clearedGeneration) {
+            playerStates.clear();
+            clearedGeneration = generation;
+        }
+        UUID key = p == null ? NO_PLAYER : p.getUniqueId();
+        String currentServer = p == null ? null : p.getServerName();
+        PlayerState state = playerStates.get(key);
+        // the balancers skip the server the player is already on, so a server switch needs a new state too
+        if(state == null || state.generation != generation || !Objects.equals(state.currentServer, currentServer)) {
+            state = new PlayerState(generation, currentServer, getBalancer().getIdealServer(p));
+            playerStates.put(key, state);
+        }
+        return state;
+    }
+
     @Override
     public int getManualMaxPlayers() {
         return manualMaxPlayers;
@@ -237,8 +329,15 @@ public class QueueServerImpl implements QueueServer {
     }
 
     @Override
-    public synchronized void setPaused(boolean paused) {
-        this.paused = paused;
+    public void setPaused(boolean paused) {
+        mutate(() -> {
+            boolean wasPaused = this.paused;
+            this.paused = paused;
+            invalidateState();
+            QueueJournal journal = getJournal();
+            if(journal != null) journal.recordPause(this, paused);
+            if(wasPaused && !paused) main.getSendScheduler().wake(this);
+        });
     }
 
     @Override
@@ -248,9 +347,18 @@ public class QueueServerImpl implements QueueServer {
 
     @Override
     public void removePlayer(QueuePlayer player) {
-        main.getQueueManager().getSendingAttempts().remove(player);
-        queueHolder.removePlayer(player);
-        positionChange();
+        mutate(() -> {
+            getQueueManager().getSendAttemptTracker().remove(player);
+            int index = queueHolder.getPosition(player)-1;
+            long modCount = queueHolder.getModCount();
+            queueHolder.removePlayer(player);
+            headCursor.removed(modCount, queueHolder.getModCount(), index);
+            getQueueManager().unindexPlayer(player);
+            QueueJournal journal = getJournal();
+            if(journal != null && index >= 0) journal.recordRemove(this, player);
+            positionChange(index);
+            if(index >= 0) getQueueManager().getQueueServerWatcher().onQueueLeave(player);
+        });
     }
 
     @Override
@@ -267,14 +375,30 @@ public class QueueServerImpl implements QueueServer {
 
     @Override
     public void addPlayer(QueuePlayer player, int position) {
-        if(!player.getQueueServer().equals(this) || queueHolder.findPlayer(player.getUniqueId()) != null) return;
+        mutate(() -> {
+            if(!player.getQueueServer().equals(this) || queueHolder.findPlayer(player.getUniqueId()) != null) return;
 
-        if(position >= 0) {
-            queueHolder.addPlayer(player, position);
-        } else {
-            queueHolder.addPlayer(player);
-        }
-        positionChange();
+            long modCount = queueHolder.getModCount();
+            if(position >= 0) {
+                queueHolder.addPlayer(player, position);
+            } else {
+                queueHolder.addPlayer(player);
+            }
+            getQueueManager().indexPlayer(player);
+            added(player, modCount);
+        });
+    }
+
+    @Override
+    public void addPlayerByPriority(QueuePlayer player) {
+        mutate(() -> {
+            if(!player.getQueueServer().equals(this) || queueHolder.findPlayer(player.getUniqueId()) != null) return;
+
+            long modCount = queueHolder.getModCount();
+            queueHolder.addPlayerByPriority(player);
+            getQueueManager().indexPlayer(player);
+            added(player, modCount);
+        });
     }
 
     @Override
@@ -342,7 +466,7 @@ public class QueueServerImpl implements QueueServer {
 
     @Override
     public AdaptedServer getIdealServer(AdaptedPlayer player) {
-        return getBalancer().getIdealServer(player);
+        return getPlayerState(player).ideal;
     }
 
     @Override
@@ -365,14 +489,91 @@ public class QueueServerImpl implements QueueServer {
         return queueHolder;
     }
 
-    private void positionChange() {
-        main.getTaskManager().runNow(
-                () -> queueHolder.getAllPlayers().forEach(queuePlayer -> {
-                    if(((QueuePlayerImpl) queuePlayer).lastPosition != queuePlayer.getPosition()) {
-                        main.call(new PositionChangeEvent(queuePlayer));
-                    }
-                })
-        );
+    /**
+     * Held while players are being sent from this queue
+     */
+    public Lock getSendLock() {
+        return sendLock;
     }
 
+    /**
+     * Gets the cursor that skips over the offline players at the front of this queue when sending
+     */
+    public HeadCursor getHeadCursor() {
+        return headCursor;
+    }
+
+    private QueueManagerImpl getQueueManager() {
+        return (QueueManagerImpl) main.getQueueManager();
+    }
+
+    /**
+     * Runs a change to this queue on the queue state thread if single-writer-queue-state is enabled,
+     * or right away otherwise
+     */
+    private void mutate(Runnable mutation) {
+        QueueStateActor actor = main.getQueueStateActor();
+        if(actor == null) {
+            mutation.run();
+        } else {
+            actor.run(mutation);
+        }
+    }
+
+    private QueueJournal getJournal() {
+        return journaling ? main.getQueueJournal() : null;
+    }
+
+    private void added(QueuePlayer player, long modCountBefore) {
+        int index = queueHolder.getPosition(player)-1;
+        headCursor.added(modCountBefore, queueHolder.getModCount(), index, player.getPlayer() != null);
+        QueueJournal journal = getJournal();
+        if(journal != null && index >= 0) journal.recordAdd(this, player, index);
+        positionChange(index);
+    }
+
+    /**
+     * Marks every position from this index onwards as possibly shifted.
+     * Changes made before the pending task runs are merged into one pass,
+     * which only starts at the lowest index that changed.
+     */
+    private void positionChange(int fromIndex) {
+        if(fromIndex < 0) return;
+        if(fromIndex == 0) main.getSendScheduler().wake(this); // new player at the front of the queue
+        int previous = positionChangeFrom.getAndAccumulate(fromIndex, Math::min);
+        if(previous != Integer.MAX_VALUE) return; // a pass is already scheduled
+        main.getTaskManager().runNow(this::firePositionChanges);
+    }
+
+    private void firePositionChanges() {
+        int from = positionChangeFrom.getAndSet(Integer.MAX_VALUE);
+        if(from == Integer.MAX_VALUE) return;
+        ImmutableList<QueuePlayer> queue = getQueue();
+        for(int i = from; i < queue.size(); i++) {
+            QueuePlayer queuePlayer = queue.get(i);
+            int position = i+1;
+            if(!(queuePlayer instanceof QueuePlayerImpl)) {
+                main.call(new PositionChangeEvent(queuePlayer, position));
+                continue;
+            }
+            QueuePlayerImpl queuePlayerImpl = (QueuePlayerImpl) queuePlayer;
+            if(queuePlayerImpl.lastPosition == position) continue;
+            queuePlayerImpl.lastPosition = position;
+            main.call(new PositionChangeEvent(queuePlayer, position));
+        }
+    }
+
+    private static class PlayerState {
+        private final long generation;
+        private final String currentServer;
+        private final AdaptedServer ideal;
+        private volatile QueueStatus status;
+        private volatile Boolean joinable;
+
+        private PlayerState(long generation, String currentServer, AdaptedServer ideal) {
+            this.generation = generation;
+            this.currentServer = currentServer;
+            this.ideal = ideal;
+        }
+    }
 }
@@ -0,0 +1,80 @@
+package us.ajg0702.queue.common.queues;
+
+import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.common.QueueMain;
+import us.ajg0702.queue.common.utils.Debug;
+
+/**
+ * Adjusts how fast a queue sends players using AIMD.
+ * Every player that makes it to the server adds a bit to the send rate,
+ * and a failed send or kick cuts it by a factor (at most once per send interval, so a burst of failures only counts once).
+ */
+public class SendRateController {
+
+    private final QueueMain main;
+    private final String name;
+
+    private double rate = -1;
+    private long lastDecrease = 0;
+
+    public SendRateController(QueueMain main, String name) {
+        this.main = main;
+        this.name = name;
+    }
+
+    public static boolean isEnabled(QueueMain main) {
+        return main.getConfig().getBoolean("adaptive-send-rate");
+    }
+
+    /**
+     * Gets the current time between sending players
+     * @return the time in seconds
+     */
+    public synchronized double getInterval() {
+        if(!isEnabled(main)) return main.getTimeBetweenPlayers();
+        return 1 / getRate();
+    }
+
+    /**
+     * Called when a player that was sent made it onto the server.
+     * The rate is only increased if the server still has room, since sending faster to a full server does nothing.
+     */
+    public synchronized void recordSuccess(AdaptedServer server) {
+        if(!isEnabled(main)) return;
+        if(server != null && server.getLastPing().isPresent() && server.getPlayerCount() >= server.getMaxPlayers()) return;
+        rate = Math.min(getMaxRate(), getRate() + main.getConfig().getDouble("adaptive-send-rate-increase"));
+    }
+
+    /**
+     * Called when sending a player failed, or a player that was sent got kicked
+     */
+    public synchronized void recordFailure() {
+        if(!isEnabled(main)) return;
+        long now = System.currentTimeMillis();
+        if(now - lastDecrease < getInterval() * 1000) return;
+        lastDecrease = now;
+        double decrease = Math.min(Math.max(main.getConfig().getDouble("adaptive-send-rate-decrease"), 0.05), 1);
+        rate = Math.max(getMinRate(), getRate() * decrease);
+        Debug.info("[send-rate] Backing off "+name+" to "+getInterval()+"s between players");
+    }
+
+    public synchronized void reset() {
+        rate = -1;
+        lastDecrease = 0;
+    }
+
+    private double getRate() {
+        if(rate <= 0) {
+            rate = Math.min(getMaxRate(), Math.max(getMinRate(), 1 / Math.max(main.getTimeBetweenPlayers(), 0.001)));
+        }
+        return rate;
+    }
+
+    private double getMinRate() {
+        return 1 / Math.max(main.getConfig().getDouble("adaptive-send-rate-max-wait"), 0.001);
+    }
+
+    private double getMaxRate() {
+        return 1 / Math.max(main.getConfig().getDouble("adaptive-send-rate-min-wait"), 0.001);
+    }
+}
@@ -0,0 +1,60 @@
+package us.ajg0702.queue.common.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A map of timestamps (last use, last message, etc.) where each entry removes itself once it no longer matters,
+ * so nothing has to scan it and it doesn't keep growing.
+ */
+public class ExpiringMap<K> {
+
+    private final TimingWheel wheel;
+    private final Map<K, Entry> entries = new ConcurrentHashMap<>();
+
+    public ExpiringMap(TimingWheel wheel) {
+        this.wheel = wheel;
+    }
+
+    /**
+     * Stores a time for this key
+     * @param keepFor How long (in milliseconds) to keep the entry before removing it
+     */
+    public void put(K key, long time, long keepFor) {
+        Entry entry = new Entry(time);
+        // scheduled while holding the key, so even a timer shorter than a tick can't fire before the entry is in the map
+        entries.compute(key, (k, previous) -> {
+            if(previous != null) previous.timeout.cancel();
+            entry.timeout = wheel.schedule(() -> entries.remove(key, entry), keepFor, TimeUnit.MILLISECONDS);
+            return entry;
+        });
+    }
+
+    public long getOrDefault(K key, long defaultValue) {
+        Entry entry = entries.get(key);
+        return entry == null ? defaultValue : entry.time;
+    }
+
+    public boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+
+    public void remove(K key) {
+        Entry entry = entries.remove(key);
+        if(entry != null) entry.timeout.cancel();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static class Entry {
+        private final long time;
+        private volatile TimingWheel.Timeout timeout;
+
+        private Entry(long time) {
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package us.ajg0702.queue.common.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * An order-statistic list (implicit treap).
+ * Inserting at an index, removing a node and finding the index of a node are all O(log n).
+ * Not thread-safe.
+ */
+public class RankedList<E> {
+
+    public static final class Node<E> {
+        private final E value;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private Node<E> left;
+        private Node<E> right;
+        private Node<E> parent;
+        private int size = 1;
+        private boolean attached;
+
+        private Node(E value) {
+            this.value = value;
+        }
+
+        public E getValue() {
+            return value;
+        }
+    }
+
+    private Node<E> root;
+
+    public int size() {
+        return size(root);
+    }
+
+    public Node<E> add(E value) {
+        return add(size(), value);
+    }
+
+    public Node<E> add(int index, E value) {
+        if(index < 0 || index > size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        Node<E> node = new Node<>(value);
+        node.attached = true;
+        Node<E>[] parts = split(root, index);
+        root = merge(merge(parts[0], node), parts[1]);
+        root.parent = null;
+        return node;
+    }
+
+    public void remove(Node<E> node) {
+        if(!node.attached) return;
+        int index = indexOf(node);
+        Node<E>[] first = split(root, index);
+        Node<E>[] second = split(first[1], 1);
+        root = merge(first[0], second[1]);
+        if(root != null) root.parent = null;
+        node.attached = false;
+        node.left = null;
+        node.right = null;
+        node.parent = null;
+        node.size = 1;
+    }
+
+    /**
+     * Gets the index of a node in this list
+     * @return the index, or -1 if the node has been removed
+     */
+    public int indexOf(Node<E> node) {
+        if(!node.attached) return -1;
+        int index = size(node.left);
+        Node<E> current = node;
+        while(current.parent != null) {
+            if(current.parent.right == current) {
+                index += size(current.parent.left) + 1;
+            }
+            current = current.parent;
+        }
+        return index;
+    }
+
+    public E get(int index) {
+        if(index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        Node<E> current = root;
+        while(true) {
+            int leftSize = size(current.left);
+            if(index < leftSize) {
+                current = current.left;
+            } else if(index == leftSize) {
+                return current.value;
+            } else {
+                index -= leftSize + 1;
+                current = current.right;
+            }
+        }
+    }
+
+    public void forEach(Consumer<? super E> consumer) {
+        // iterative in-order traversal so that large lists can't overflow the stack
+        List<Node<E>> stack = new ArrayList<>();
+        Node<E> current = root;
+        while(current != null || !stack.isEmpty()) {
+            while(current != null) {
+                stack.add(current);
+                current = current.left;
+            }
+            current = stack.remove(stack.size() - 1);
+            Node<E> right = current.right;
+            consumer.accept(current.value);
+            current = right;
+        }
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static <E> void update(Node<E> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        if(node.left != null) node.left.parent = node;
+        if(node.right != null) node.right.parent = node;
+    }
+
+    /**
+     * Splits the tree so that the first {@code index} elements are in the left result
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> Node<E>[] split(Node<E> node, int index) {
+        if(node == null) return new Node[]{null, null};
+        if(size(node.left) < index) {
+            Node<E>[] parts = split(node.right, index - size(node.left) - 1);
+            node.right = parts[0];
+            update(node);
+            if(parts[1] != null) parts[1].parent = null;
+            return new Node[]{node, parts[1]};
+        } else {
+            Node<E>[] parts = split(node.left, index);
+            node.left = parts[1];
+            update(node);
+            if(parts[0] != null) parts[0].parent = null;
+            return new Node[]{parts[0], node};
+        }
+    }
+
+    private static <E> Node<E> merge(Node<E> left, Node<E> right) {
+        if(left == null) return right;
+        if(right == null) return left;
+        if(left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+}
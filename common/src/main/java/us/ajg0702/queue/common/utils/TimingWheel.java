@@ -0,0 +1,121 @@
+package us.ajg0702.queue.common.utils;
+
+import us.ajg0702.queue.api.util.QueueLogger;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timing wheel, for timers that are usually cancelled or replaced before they fire (cooldowns, expiry, etc).
+ * <p>
+ * Timers are put in one of a fixed number of buckets based on the tick they expire on,
+ * so scheduling and cancelling a timer is O(1).
+ * {@link #tick()} has to be called every tick, and only looks at the buckets for the ticks that have passed since it was last called.
+ */
+public class TimingWheel {
+
+    private final long tickMillis;
+    private final List<Set<Timeout>> buckets;
+    private final long startTime = System.currentTimeMillis();
+    private final QueueLogger logger;
+
+    // the next tick that hasn't been processed yet
+    private long nextTick = 0;
+
+    public TimingWheel(long tickMillis, int size, QueueLogger logger) {
+        if(tickMillis <= 0 || size <= 0) throw new IllegalArgumentException("tickMillis and size must be positive");
+        this.tickMillis = tickMillis;
+        this.logger = logger;
+        List<Set<Timeout>> buckets = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            buckets.add(new HashSet<>());
+        }
+        this.buckets = Collections.unmodifiableList(buckets);
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Runs a task after a delay.
+     * The task runs on the thread that calls {@link #tick()}, up to one tick late.
+     * @return the timer, which can be used to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.currentTimeMillis() + Math.max(unit.toMillis(delay), 0));
+        synchronized(this) {
+            // round up, so it never fires early
+            long tick = Math.max((timeout.deadline - startTime + tickMillis - 1) / tickMillis, nextTick);
+            timeout.bucket = buckets.get((int) (tick % buckets.size()));
+            timeout.bucket.add(timeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * Runs every task whose time has come
+     */
+    public void tick() {
+        long now = System.currentTimeMillis();
+        List<Timeout> expired = new ArrayList<>();
+        synchronized(this) {
+            long currentTick = (now - startTime) / tickMillis;
+            // if we fell more than a whole turn behind, every bucket only needs to be looked at once
+            long from = Math.max(nextTick, currentTick - buckets.size() + 1);
+            for(long tick = from; tick <= currentTick; tick++) {
+                Iterator<Timeout> iterator = buckets.get((int) (tick % buckets.size())).iterator();
+                while(iterator.hasNext()) {
+                    Timeout timeout = iterator.next();
+                    if(timeout.deadline > now) continue; // it's on a later turn of the wheel
+                    iterator.remove();
+                    timeout.bucket = null;
+                    expired.add(timeout);
+                }
+            }
+            nextTick = Math.max(nextTick, currentTick + 1);
+        }
+        for(Timeout timeout : expired) {
+            try {
+                timeout.task.run();
+            } catch(Exception e) {
+                logger.warning("An error occurred while running an ajQueue timer:", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of timers waiting to fire
+     */
+    public synchronized int size() {
+        int size = 0;
+        for(Set<Timeout> bucket : buckets) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    public class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private Set<Timeout> bucket;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Stops the task from running, if it hasn't already
+         * @return true if the task was cancelled, false if it already ran or was already cancelled
+         */
+        public boolean cancel() {
+            synchronized(TimingWheel.this) {
+                if(bucket == null) return false;
+                bucket.remove(this);
+                bucket = null;
+                return true;
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.bungeecord.BungeeComponentSerializer;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
 import net.md_5.bungee.api.event.*;
 import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.api.plugin.Plugin;
@@ -107,11 +108,14 @@ public class BungeeQueue extends Plugin implements Listener, Implementation {
         e.setCancelled(true);
 
         if(!(e.getReceiver() instanceof ProxiedPlayer)) return;
+        if(!(e.getSender() instanceof Server)) return;
+        String sourceServer = ((Server) e.getSender()).getInfo().getName();
 
         ProxyServer.getInstance().getScheduler().runAsync(this, () ->
                 main.getEventHandler()
                         .handleMessage(
                                 new BungeePlayer((ProxiedPlayer) e.getReceiver()),
+                                sourceServer,
                                 e.getData()
                         )
         );
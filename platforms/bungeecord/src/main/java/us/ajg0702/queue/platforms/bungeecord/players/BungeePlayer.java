@@ -14,6 +14,7 @@ import net.md_5.bungee.api.connection.ProxiedPlayer;
 import org.jetbrains.annotations.NotNull;
 import us.ajg0702.queue.api.players.AdaptedPlayer;
 import us.ajg0702.queue.api.server.AdaptedServer;
+import us.ajg0702.queue.common.QueueMain;
 import us.ajg0702.queue.common.utils.Debug;
 import us.ajg0702.queue.platforms.bungeecord.BungeeQueue;
 import us.ajg0702.queue.platforms.bungeecord.server.BungeeServer;
@@ -22,6 +23,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class BungeePlayer implements AdaptedPlayer, Audience {
     @Override
@@ -134,9 +136,16 @@ public class BungeePlayer implements AdaptedPlayer, Audience {
     }
 
     @Override
-    public void connect(AdaptedServer server) {
+    public CompletableFuture<Boolean> connect(AdaptedServer server) {
         Debug.info("Attempting to send "+getName()+" to "+server.getName());
-        handle.connect(((BungeeServer) server).getHandle());
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        handle.connect(((BungeeServer) server).getHandle(), (success, error) -> {
+            future.complete(success);
+            // no error means it was cancelled or they were already connected, and kicks are handled by onServerKick
+            if(success || error == null) return;
+            QueueMain.getInstance().getEventHandler().onConnectFailed(this, server);
+        });
+        return future;
     }
 
     @Override
@@ -1,20 +1,33 @@
 package us.ajg0702.queue.platforms.bungeecord.server;
 
+import com.google.common.collect.ImmutableSet;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.bungeecord.BungeeComponentSerializer;
 import net.md_5.bungee.api.ServerPing;
 import net.md_5.bungee.api.chat.BaseComponent;
 import org.jetbrains.annotations.NotNull;
 import us.ajg0702.queue.api.server.AdaptedServerPing;
+import us.ajg0702.queue.api.server.ServerHeartbeat;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BungeeServerPing implements AdaptedServerPing {
 
     final ServerPing handle;
     private final long sent;
+    private final boolean whitelisted;
+    private final ImmutableSet<UUID> whitelistedPlayers;
+    private final long whitelistDigest;
 
     public BungeeServerPing(@NotNull ServerPing handle, long sent) {
         this.handle = handle;
         this.sent = sent;
+
+        String description = getPlainDescription();
+        whitelisted = AdaptedServerPing.isWhitelisted(description);
+        whitelistedPlayers = AdaptedServerPing.parseWhitelist(description);
+        whitelistDigest = ServerHeartbeat.digest(whitelistedPlayers);
     }
 
     @Override
@@ -31,11 +44,11 @@ public class BungeeServerPing implements AdaptedServerPing {
         return desc.toPlainText();
     }
 
-    int add = 0;
+    private final AtomicInteger add = new AtomicInteger();
 
     @Override
     public int getPlayerCount() {
-        return handle.getPlayers().getOnline()+add;
+        return handle.getPlayers().getOnline()+add.get();
     }
 
     @Override
@@ -45,7 +58,7 @@ public class BungeeServerPing implements AdaptedServerPing {
 
     @Override
     public void addPlayer() {
-        add++;
+        add.incrementAndGet();
     }
 
     @Override
@@ -53,6 +66,21 @@ public class BungeeServerPing implements AdaptedServerPing {
         return sent;
     }
 
+    @Override
+    public boolean isWhitelisted() {
+        return whitelisted;
+    }
+
+    @Override
+    public ImmutableSet<UUID> getWhitelistedPlayerSet() {
+        return whitelistedPlayers;
+    }
+
+    @Override
+    public long getWhitelistDigest() {
+        return whitelistDigest;
+    }
+
     @Override
     public ServerPing getHandle() {
         return handle;
@@ -13,6 +13,7 @@ import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
 import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
 import net.kyori.adventure.text.Component;
 import org.bstats.charts.SimplePie;
@@ -120,8 +121,13 @@ public class VelocityQueue implements Implementation {
         e.setResult(PluginMessageEvent.ForwardResult.handled());
 
         if(!(e.getTarget() instanceof Player)) return;
+        if(!(e.getSource() instanceof ServerConnection)) return;
 
-        main.getEventHandler().handleMessage(new VelocityPlayer((Player) e.getTarget()), e.getData());
+        main.getEventHandler().handleMessage(
+                new VelocityPlayer((Player) e.getTarget()),
+                ((ServerConnection) e.getSource()).getServerInfo().getName(),
+                e.getData()
+        );
     }
 
     @SuppressWarnings("UnstableApiUsage")
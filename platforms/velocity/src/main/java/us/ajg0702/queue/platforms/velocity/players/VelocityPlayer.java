@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class VelocityPlayer implements AdaptedPlayer, Audience {
     @Override
@@ -131,9 +132,9 @@ public class VelocityPlayer implements AdaptedPlayer, Audience {
     }
 
     @Override
-    public void connect(AdaptedServer server) {
+    public CompletableFuture<Boolean> connect(AdaptedServer server) {
         Debug.info("Attempting to send "+getName()+" to "+server.getName());
-        handle.createConnectionRequest((RegisteredServer) server.getHandle()).connect().thenAcceptAsync(
+        return handle.createConnectionRequest((RegisteredServer) server.getHandle()).connect().thenApplyAsync(
                 result -> {
                     if(!result.isSuccessful()) {
                         QueueMain main = QueueMain.getInstance();
@@ -180,6 +181,7 @@ public class VelocityPlayer implements AdaptedPlayer, Audience {
                                 false
                         );
                     }
+                    return result.isSuccessful();
                 }
         );
     }
@@ -8,6 +8,7 @@ import us.ajg0702.queue.api.players.AdaptedPlayer;
 import us.ajg0702.queue.api.server.AdaptedServer;
 import us.ajg0702.queue.api.server.AdaptedServerInfo;
 import us.ajg0702.queue.api.server.AdaptedServerPing;
+import us.ajg0702.queue.api.server.ServerHeartbeat;
 import us.ajg0702.queue.api.util.QueueLogger;
 import us.ajg0702.queue.platforms.velocity.players.VelocityPlayer;
 
@@ -23,6 +24,7 @@ public class VelocityServer implements AdaptedServer {
 
     private AdaptedServerPing lastPing = null;
     private AdaptedServerPing lastSuccessfullPing = null;
+    private volatile ServerHeartbeat lastHeartbeat = null;
     private long lastOffline = 0;
 
     private int offlineTime = 0;
@@ -78,14 +80,23 @@ public class VelocityServer implements AdaptedServer {
     }
 
     private void markOffline(boolean debug, QueueLogger logger, CompletableFuture<AdaptedServerPing> future, long sent, Throwable e) {
+        markOffline(sent);
+
+        future.completeExceptionally(e);
+        if(debug) logger.info("[pinger] [" + getName() + "] offline:", e);
+    }
+
+    @Override
+    public void markOffline() {
+        markOffline(System.currentTimeMillis());
+    }
+
+    private void markOffline(long sent) {
         long lastOnline = lastSuccessfullPing == null ? 0 : lastSuccessfullPing.getFetchedTime();
         offlineTime = (int) Math.min(sent - lastOnline, Integer.MAX_VALUE) / 1000;
 
         lastOffline = sent;
-
-        future.completeExceptionally(e);
         lastPing = null;
-        if(debug) logger.info("[pinger] [" + getName() + "] offline:", e);
     }
 
     @Override
@@ -93,6 +104,16 @@ public class VelocityServer implements AdaptedServer {
         return Optional.ofNullable(lastPing);
     }
 
+    @Override
+    public Optional<ServerHeartbeat> getLastHeartbeat() {
+        return Optional.ofNullable(lastHeartbeat);
+    }
+
+    @Override
+    public void setLastHeartbeat(ServerHeartbeat heartbeat) {
+        lastHeartbeat = heartbeat;
+    }
+
     @Override
     public boolean canAccess(AdaptedPlayer player) {
         return true;
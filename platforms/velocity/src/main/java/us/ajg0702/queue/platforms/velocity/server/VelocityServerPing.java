@@ -1,20 +1,34 @@
 package us.ajg0702.queue.platforms.velocity.server;
 
+import com.google.common.collect.ImmutableSet;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
 import com.velocitypowered.api.proxy.server.ServerPing;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import us.ajg0702.queue.api.server.AdaptedServerPing;
+import us.ajg0702.queue.api.server.ServerHeartbeat;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class VelocityServerPing implements AdaptedServerPing {
 
     private final ServerPing handle;
-    private final RegisteredServer handle2;
     private final long sent;
+    // players connected when the ping was received, so players we send afterwards are only counted by add
+    private final int playerCount;
+    private final boolean whitelisted;
+    private final ImmutableSet<UUID> whitelistedPlayers;
+    private final long whitelistDigest;
     public VelocityServerPing(ServerPing handle, long sent, RegisteredServer handle2) {
         this.handle = handle;
         this.sent = sent;
-        this.handle2 = handle2;
+        this.playerCount = handle2.getPlayersConnected().size();
+
+        String description = getPlainDescription();
+        whitelisted = AdaptedServerPing.isWhitelisted(description);
+        whitelistedPlayers = AdaptedServerPing.parseWhitelist(description);
+        whitelistDigest = ServerHeartbeat.digest(whitelistedPlayers);
     }
 
     @Override
@@ -27,11 +41,11 @@ public class VelocityServerPing implements AdaptedServerPing {
         return PlainTextComponentSerializer.plainText().serialize(handle.getDescriptionComponent());
     }
 
-    int add = 0;
+    private final AtomicInteger add = new AtomicInteger();
 
     @Override
     public int getPlayerCount() {
-        return handle2.getPlayersConnected().size();
+        return playerCount+add.get();
     }
 
     @Override
@@ -41,7 +55,7 @@ public class VelocityServerPing implements AdaptedServerPing {
 
     @Override
     public void addPlayer() {
-        add++;
+        add.incrementAndGet();
     }
 
     @Override
@@ -49,6 +63,21 @@ public class VelocityServerPing implements AdaptedServerPing {
         return sent;
     }
 
+    @Override
+    public boolean isWhitelisted() {
+        return whitelisted;
+    }
+
+    @Override
+    public ImmutableSet<UUID> getWhitelistedPlayerSet() {
+        return whitelistedPlayers;
+    }
+
+    @Override
+    public long getWhitelistDigest() {
+        return whitelistDigest;
+    }
+
     @Override
     public ServerPing getHandle() {
         return handle;
@@ -1,6 +1,5 @@
 package us.ajg0702.queue.logic;
 
-import com.google.common.collect.ImmutableList;
 import us.ajg0702.queue.api.premium.Logic;
 import us.ajg0702.queue.api.players.AdaptedPlayer;
 import us.ajg0702.queue.api.players.QueuePlayer;
@@ -82,24 +81,11 @@ public class PremiumLogic implements Logic {
             return queuePlayer;
         }
 
-        ImmutableList<QueuePlayer> list = queueServer.getQueue();
-
-        for(int i = 0; i < list.size(); i++) {
-            QueuePlayer pl = list.get(i);
-            if (pl.getPriority() < highestPriority) {
-                if (debug) {
-                    logger.info("[priority] " + player.getName() + "  Adding to: " + i);
-                }
-                queueServer.addPlayer(queuePlayer, i);
-                return queuePlayer;
-            }
-        }
-
+        queueServer.addPlayerByPriority(queuePlayer);
 
         if(debug) {
-            logger.info("[priority] "+player.getName()+"  Cant go infront of anyone" );
+            logger.info("[priority] " + player.getName() + "  Added to: " + (queuePlayer.getPosition()-1));
         }
-        queueServer.addPlayer(queuePlayer);
         return queuePlayer;
     }
 
@@ -3,6 +3,8 @@ package us.ajg0702.queue.logic.permissions.hooks;
 import net.luckperms.api.LuckPerms;
 import net.luckperms.api.LuckPermsProvider;
 import net.luckperms.api.context.Context;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
 import net.luckperms.api.model.user.User;
 import net.luckperms.api.node.Node;
 import net.luckperms.api.node.NodeType;
@@ -16,8 +18,24 @@ import java.util.*;
 public class LuckPermsHook implements PermissionHook {
 
     private final QueueMain main;
+    private EventSubscription<UserDataRecalculateEvent> subscription;
     public LuckPermsHook(QueueMain main) {
         this.main = main;
+        if(!canUse()) return;
+        try {
+            // make-room remembers priorities, so let it know when they might have changed
+            subscription = LuckPermsProvider.get().getEventBus().subscribe(main.getImplementation(), UserDataRecalculateEvent.class,
+                    e -> main.getMakeRoomIndex().invalidate(e.getUser().getUniqueId()));
+        } catch(IllegalStateException e) {
+            main.getLogger().warning("Unable to listen for LuckPerms permission changes. Make-room priorities may be out of date until players rejoin.", e);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if(subscription == null) return;
+        subscription.close();
+        subscription = null;
     }
 
     @Override
@@ -17,6 +17,7 @@ import org.bukkit.plugin.messaging.PluginMessageListener;
 import org.jetbrains.annotations.NotNull;
 import us.ajg0702.queue.api.AjQueueAPI;
 import us.ajg0702.queue.api.communication.ComResponse;
+import us.ajg0702.queue.api.server.ServerHeartbeat;
 import us.ajg0702.queue.api.spigot.AjQueueSpigotAPI;
 import us.ajg0702.queue.spigot.api.SpigotAPI;
 import us.ajg0702.queue.spigot.communication.ResponseManager;
@@ -24,7 +25,10 @@ import us.ajg0702.queue.spigot.placeholders.PlaceholderExpansion;
 import us.ajg0702.utils.common.ConfigFile;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
 import java.util.logging.Level;
 
 @SuppressWarnings("UnstableApiUsage")
@@ -38,6 +42,8 @@ public class SpigotMain extends JavaPlugin implements PluginMessageListener,List
 	private ConfigFile config;
 
 	private boolean hasProxy = false;
+
+	private volatile boolean draining = false;
 	
 	@SuppressWarnings("ConstantConditions")
 	public void onEnable() {
@@ -87,6 +93,11 @@ public class SpigotMain extends JavaPlugin implements PluginMessageListener,List
 			e.printStackTrace();
 		}
 
+		int heartbeatInterval = config == null ? 0 : config.getInt("heartbeat-interval");
+		if(heartbeatInterval > 0) {
+			Bukkit.getScheduler().runTaskTimer(this, this::sendHeartbeat, heartbeatInterval, heartbeatInterval);
+		}
+
 		getLogger().info("Spigot side enabled! v"+getDescription().getVersion());
 	}
 
@@ -94,6 +105,54 @@ public class SpigotMain extends JavaPlugin implements PluginMessageListener,List
 		return hasProxy;
 	}
 
+	public boolean isDraining() {
+		return draining;
+	}
+
+	/**
+	 * Sets if this server is draining (about to restart or shut down).
+	 * While draining, the proxy won't send any players here.
+	 * Only works if heartbeats are enabled
+	 */
+	public void setDraining(boolean draining) {
+		this.draining = draining;
+	}
+
+	private long lastHeartbeat = 0;
+	private void sendHeartbeat() {
+		long now = System.nanoTime();
+		long elapsed = now - lastHeartbeat;
+		lastHeartbeat = now;
+		if(Bukkit.getOnlinePlayers().isEmpty()) return;
+
+		// how many ticks actually ran since the last heartbeat, per second
+		double tps = 20;
+		int interval = config.getInt("heartbeat-interval");
+		if(elapsed > 0 && elapsed < 60e9) {
+			tps = Math.min(20, interval / (elapsed / 1e9));
+		}
+
+		// the proxy can only check who is whitelisted if the list is in the motd
+		boolean whitelisted = Bukkit.hasWhitelist() && config.getBoolean("take-over-motd-for-whitelist");
+		long digest = 0;
+		if(whitelisted) {
+			List<UUID> uuids = new ArrayList<>();
+			for(OfflinePlayer player : Bukkit.getWhitelistedPlayers()) {
+				uuids.add(player.getUniqueId());
+			}
+			digest = ServerHeartbeat.digest(uuids);
+		}
+
+		sendMessage("heartbeat", ServerHeartbeat.encode(
+				Bukkit.getOnlinePlayers().size(),
+				Bukkit.getMaxPlayers(),
+				tps,
+				draining,
+				whitelisted,
+				digest
+		));
+	}
+
 	final HashMap<Player, String> queuebatch = new HashMap<>();
 
 	@Override
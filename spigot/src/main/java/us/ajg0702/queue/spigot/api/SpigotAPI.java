@@ -177,6 +177,16 @@ public class SpigotAPI extends AjQueueSpigotAPI {
         return future;
     }
 
+    @Override
+    public void setDraining(boolean draining) {
+        main.setDraining(draining);
+    }
+
+    @Override
+    public boolean isDraining() {
+        return main.isDraining();
+    }
+
     private Player getSomePlayer() {
         Collection<? extends Player> players = Bukkit.getOnlinePlayers();
         if(players.size() == 0) return null;